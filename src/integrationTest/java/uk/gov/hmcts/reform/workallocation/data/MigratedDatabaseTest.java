@@ -0,0 +1,250 @@
+package uk.gov.hmcts.reform.workallocation.data;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import uk.gov.hmcts.reform.workallocation.config.CaseTypeConfiguration;
+import uk.gov.hmcts.reform.workallocation.exception.LeaseLostException;
+import uk.gov.hmcts.reform.workallocation.model.Task;
+import uk.gov.hmcts.reform.workallocation.services.CaseType;
+import uk.gov.hmcts.reform.workallocation.services.EnqueuedCaseService;
+import uk.gov.hmcts.reform.workallocation.services.LastRunTimeService;
+import uk.gov.hmcts.reform.workallocation.services.OutboxEntry;
+import uk.gov.hmcts.reform.workallocation.services.PollLease;
+import uk.gov.hmcts.reform.workallocation.services.PollLeaseService;
+import uk.gov.hmcts.reform.workallocation.services.PollMembershipService;
+import uk.gov.hmcts.reform.workallocation.services.TaskOutboxService;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the native queries of the poll against a postgres database migrated by the flyway scripts.
+ * Every service call is a transaction of its own, as it is in the poll.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({LastRunTimeService.class, PollLeaseService.class, PollMembershipService.class, EnqueuedCaseService.class,
+    TaskOutboxService.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = "service.sharding.enabled=true")
+@Testcontainers
+class MigratedDatabaseTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES =
+        new PostgreSQLContainer<>(DockerImageName.parse("postgres:11-alpine"));
+
+    private static final LocalDateTime LAST_MODIFIED = LocalDateTime.of(2019, 9, 25, 12, 0, 0);
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @Autowired
+    private Flyway flyway;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Autowired
+    private LastRunTimeService lastRunTimeService;
+
+    @Autowired
+    private PollLeaseService pollLeaseService;
+
+    @Autowired
+    private PollMembershipService pollMembershipService;
+
+    @Autowired
+    private EnqueuedCaseService enqueuedCaseService;
+
+    @Autowired
+    private TaskOutboxService taskOutboxService;
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transaction;
+    private TransactionTemplate newTransaction;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        Arrays.asList("last_run_time", "poll_lease", "poll_member", "enqueued_case", "task_outbox")
+            .forEach(table -> jdbcTemplate.update("delete from " + table));
+        transaction = new TransactionTemplate(transactionManager);
+        newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Test
+    void allMigrationsAreApplied() {
+        assertEquals(0, flyway.info().pending().length);
+        assertEquals("6", flyway.info().current().getVersion().getVersion());
+    }
+
+    @Test
+    void checkpointsDoNotTakeTheIdOfThePollRow() {
+        lastRunTimeService.insertLastRunTime(LAST_MODIFIED);
+        lastRunTimeService.saveLastRunTime("divorce", LAST_MODIFIED.plusHours(1));
+        lastRunTimeService.saveLastRunTime("divorce", LAST_MODIFIED.plusHours(2));
+
+        assertEquals(LAST_MODIFIED, lastRunTimeService.getLastRunTime().orElse(null));
+        assertEquals(LAST_MODIFIED.plusHours(2), lastRunTimeService.getLastRunTime("divorce").orElse(null));
+        assertFalse(lastRunTimeService.getLastRunTime("fr").isPresent());
+    }
+
+    @Test
+    void leaseIsHeldUntilItIsReleased() {
+        PollLease lease = pollLeaseService.acquire("test").orElseThrow();
+        assertFalse(pollLeaseService.acquire("test").isPresent());
+        pollLeaseService.renew(lease);
+        transaction.executeWithoutResult(status -> pollLeaseService.checkHeld(lease));
+
+        pollLeaseService.release(lease);
+        PollLease next = pollLeaseService.acquire("test").orElseThrow();
+        assertEquals(lease.getFencingToken() + 1, next.getFencingToken());
+        assertThrows(LeaseLostException.class, () -> pollLeaseService.renew(lease));
+        assertThrows(LeaseLostException.class,
+            () -> transaction.executeWithoutResult(status -> pollLeaseService.checkHeld(lease)));
+        transaction.executeWithoutResult(status -> pollLeaseService.checkHeld(next));
+    }
+
+    @Test
+    void membersWithoutHeartbeatAreRemoved() {
+        jdbcTemplate.update(
+            "insert into poll_member (member_id, heartbeat_at) values ('gone', now() - interval '1 hour')");
+        pollMembershipService.heartbeat();
+        List<CaseType> caseTypes = CaseTypeConfiguration.defaultCaseTypes();
+        assertEquals(caseTypes.size(), pollMembershipService.assign(caseTypes).size());
+        assertEquals(Collections.singletonList(pollMembershipService.getMemberId()),
+            jdbcTemplate.queryForList("select member_id from poll_member", String.class));
+
+        jdbcTemplate.update("insert into poll_member (member_id) values ('zzz-other')");
+        assertEquals((caseTypes.size() + 1) / 2, pollMembershipService.assign(caseTypes).size());
+
+        pollMembershipService.leave();
+        assertEquals(Collections.singletonList("zzz-other"),
+            jdbcTemplate.queryForList("select member_id from poll_member", String.class));
+    }
+
+    @Test
+    void queuedCasesAreReadBackPerCaseType() {
+        Task submitted = task("1", "Submitted");
+        Task evidence = task("1", "SupplementaryEvidence");
+        enqueuedCaseService.markEnqueued("divorce", Arrays.asList(submitted, task("2", "Submitted")));
+        enqueuedCaseService.markEnqueued("divorce_evidence", Collections.singletonList(evidence));
+        assertEquals(3, count("enqueued_case"));
+
+        // nothing is cached yet, the fingerprints are read from the table
+        EnqueuedCaseService restarted = new EnqueuedCaseService(10, 30);
+        ReflectionTestUtils.setField(restarted, "em", em);
+        assertTrue(restarted.filterUnchanged("divorce", Collections.singletonList(submitted)).isEmpty());
+        assertTrue(restarted.filterUnchanged("divorce_evidence", Collections.singletonList(evidence)).isEmpty());
+        Task changed = task("1", "AwaitingHWFDecision");
+        assertEquals(Collections.singletonList(changed),
+            restarted.filterUnchanged("divorce", Collections.singletonList(changed)));
+
+        enqueuedCaseService.markEnqueued("divorce", Collections.singletonList(changed));
+        assertEquals("AwaitingHWFDecision", jdbcTemplate.queryForObject(
+            "select state from enqueued_case where case_type = 'divorce' and case_id = '1'", String.class));
+        assertEquals(3, count("enqueued_case"));
+
+        jdbcTemplate.update("update enqueued_case set enqueued_at = now() - interval '31 days' where case_id = '2'");
+        enqueuedCaseService.purge();
+        assertEquals(2, count("enqueued_case"));
+    }
+
+    @Test
+    void claimedOutboxEntriesAreSkippedUntilTheirClaimRunsOut() {
+        taskOutboxService.add(Arrays.asList(task("1", "Submitted"), task("2", "Submitted"), task("3", "Submitted")));
+
+        transaction.executeWithoutResult(status -> {
+            List<OutboxEntry> claimed = taskOutboxService.claim(2);
+            List<OutboxEntry> claimedByOther = newTransaction.execute(other -> taskOutboxService.claim(2));
+            assertEquals(Arrays.asList("1", "2"), messageIds(claimed));
+            assertEquals(Collections.singletonList("3"), messageIds(claimedByOther));
+        });
+        // the claims are committed, the entries are sent without a lock but are not claimed again
+        assertTrue(taskOutboxService.claim(10).isEmpty());
+
+        jdbcTemplate.update("update task_outbox set next_attempt_at = now() where message_id = '1'");
+        List<OutboxEntry> reclaimed = taskOutboxService.claim(10);
+        assertEquals(Collections.singletonList("1"), messageIds(reclaimed));
+        jdbcTemplate.update("delete from task_outbox where message_id <> '1'");
+
+        List<Long> ids = reclaimed.stream().map(OutboxEntry::getId).collect(Collectors.toList());
+        taskOutboxService.retryLater(ids, "server busy");
+        assertTrue(taskOutboxService.claim(10).isEmpty());
+        assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject("select attempts from task_outbox",
+            Integer.class));
+
+        jdbcTemplate.update("update task_outbox set next_attempt_at = now()");
+        assertEquals(1, taskOutboxService.claim(10).get(0).getAttempts());
+        taskOutboxService.park(ids, "message too large");
+        jdbcTemplate.update("update task_outbox set next_attempt_at = now()");
+        assertTrue(taskOutboxService.claim(10).isEmpty());
+        assertEquals(1, count("task_outbox where parked_at is not null"));
+
+        taskOutboxService.delete(ids);
+        assertEquals(0, count("task_outbox"));
+    }
+
+    private int count(String from) {
+        return jdbcTemplate.queryForObject("select count(*) from " + from, Integer.class);
+    }
+
+    private static List<String> messageIds(List<OutboxEntry> entries) {
+        return entries.stream().map(OutboxEntry::getMessageId).collect(Collectors.toList());
+    }
+
+    private static Task task(String id, String state) {
+        return Task.builder()
+            .id(id)
+            .state(state)
+            .jurisdiction("DIVORCE")
+            .caseTypeId("DIVORCE")
+            .lastModifiedDate(LAST_MODIFIED)
+            .build();
+    }
+}
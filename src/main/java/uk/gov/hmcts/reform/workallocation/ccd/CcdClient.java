@@ -9,10 +9,13 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
+import uk.gov.hmcts.reform.workallocation.config.CcdFeignConfiguration;
+import uk.gov.hmcts.reform.workallocation.config.FeignClientConfiguration;
 
 import java.util.Map;
 
-@FeignClient(name = "ccd-api", url = "${ccd.baseUrl}")
+@FeignClient(name = "ccd-api", url = "${ccd.baseUrl}",
+    configuration = {FeignClientConfiguration.class, CcdFeignConfiguration.class})
 public interface CcdClient {
 
     String SERVICE_AUTH_HEADER = "ServiceAuthorization";
@@ -0,0 +1,87 @@
+package uk.gov.hmcts.reform.workallocation.ccd;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Builds an elastic search query for CCD out of clauses that all have to match.
+ * The query ends with the paging placeholder, {@link #toTemplate()} compiles it into a {@link QueryTemplate}.
+ */
+public class CcdQueryBuilder {
+
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private final ArrayNode must = NODES.arrayNode();
+    private final ArrayNode source = NODES.arrayNode();
+
+    public static CcdQueryBuilder query() {
+        return new CcdQueryBuilder();
+    }
+
+    /**
+     * The field has to be greater than {@code from} and not greater than {@code to}.
+     */
+    public CcdQueryBuilder range(String field, String from, String to) {
+        ObjectNode bounds = NODES.objectNode().put("gt", from).put("lte", to);
+        must.addObject().putObject("range").set(field, bounds);
+        return this;
+    }
+
+    public CcdQueryBuilder match(String field, String value) {
+        must.addObject().putObject("match").put(field, value);
+        return this;
+    }
+
+    /**
+     * The field has to match one of the values.
+     */
+    public CcdQueryBuilder matchAny(String field, String... values) {
+        must.addObject().putObject("match").putObject(field)
+            .put("query", String.join(" ", values))
+            .put("operator", "or");
+        return this;
+    }
+
+    /**
+     * One of the alternatives has to match.
+     */
+    public CcdQueryBuilder anyOf(CcdQueryBuilder... alternatives) {
+        ArrayNode should = must.addObject().putObject("bool").putArray("should");
+        for (CcdQueryBuilder alternative : alternatives) {
+            should.addObject().putObject("bool").set("must", alternative.must);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a clause written in the elastic search query language.
+     */
+    public CcdQueryBuilder clause(JsonNode clause) {
+        must.add(clause);
+        return this;
+    }
+
+    public CcdQueryBuilder source(String... fields) {
+        for (String field : fields) {
+            source.add(field);
+        }
+        return this;
+    }
+
+    public String toJson() {
+        ObjectNode query = NODES.objectNode();
+        query.putObject("query").putObject("bool").set("must", must);
+        if (source.size() > 0) {
+            query.set("_source", source);
+        }
+        String json = query.toString();
+        // the paging clause is rendered per request, it goes last in the query object
+        return json.substring(0, json.length() - 1) + "," + QueryTemplate.PAGE_PLACE_HOLDER + "}";
+    }
+
+    public QueryTemplate toTemplate() {
+        return QueryTemplate.compile(toJson());
+    }
+}
@@ -0,0 +1,67 @@
+package uk.gov.hmcts.reform.workallocation.ccd;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The CCD search queries, one json file per query named after the file.
+ * A file holds the clauses the cases have to match on top of the last modified range in {@code must}
+ * and the fields to return in {@code _source}. The queries are compiled once when the application starts.
+ */
+@Component
+@Slf4j
+public class CcdQueryRegistry {
+
+    private static final String LAST_MODIFIED = "last_modified";
+
+    private final Map<String, QueryTemplate> queries = new HashMap<>();
+
+    @Autowired
+    public CcdQueryRegistry(@Value("${ccd.search.queries}") String location) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(location)) {
+            String fileName = resource.getFilename();
+            if (fileName == null || !fileName.endsWith(".json")) {
+                continue;
+            }
+            String name = fileName.substring(0, fileName.length() - ".json".length());
+            try (InputStream in = resource.getInputStream()) {
+                queries.put(name, compile(mapper.readTree(in)));
+            }
+        }
+        log.info("Loaded CCD queries {} from {}", queries.keySet(), location);
+    }
+
+    public QueryTemplate get(String name) {
+        QueryTemplate query = queries.get(name);
+        if (query == null) {
+            throw new IllegalArgumentException("There is no CCD query named " + name);
+        }
+        return query;
+    }
+
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(queries.keySet());
+    }
+
+    private static QueryTemplate compile(JsonNode definition) {
+        CcdQueryBuilder builder = CcdQueryBuilder.query()
+            .range(LAST_MODIFIED, QueryTemplate.FROM_PLACE_HOLDER, QueryTemplate.TO_PLACE_HOLDER);
+        definition.path("must").forEach(builder::clause);
+        definition.path("_source").forEach(field -> builder.source(field.asText()));
+        return builder.toTemplate();
+    }
+}
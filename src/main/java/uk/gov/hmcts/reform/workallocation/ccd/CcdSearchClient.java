@@ -0,0 +1,15 @@
+package uk.gov.hmcts.reform.workallocation.ccd;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Searches CCD cases of one case type. The response has the shape {@link CcdSearchResponseDecoder} produces,
+ * a failed search completes the future with a
+ * {@link uk.gov.hmcts.reform.workallocation.exception.CcdConnectionException}.
+ */
+public interface CcdSearchClient {
+
+    CompletableFuture<Map<String, Object>> searchCases(String authorisation, String serviceAuthorisation,
+                                                       String ctid, String body);
+}
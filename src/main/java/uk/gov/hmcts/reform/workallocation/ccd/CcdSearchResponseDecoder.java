@@ -0,0 +1,137 @@
+package uk.gov.hmcts.reform.workallocation.ccd;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import feign.Response;
+import feign.codec.Decoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the CCD search response token by token and keeps only the fields a task is made of.
+ * Everything else, like the scanned documents of the exception records, is skipped without being materialised.
+ * The result has the same shape as the full response: a {@code total} and the {@code cases} with their
+ * {@code case_data}.
+ */
+public class CcdSearchResponseDecoder implements Decoder {
+
+    public static final Set<String> CASE_FIELDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        "id", "jurisdiction", "state", "last_modified", "case_type_id")));
+
+    // the case data fields the probate and financial remedy states are worked out from
+    public static final Set<String> CASE_DATA_FIELDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        "applicationType", "caseType", "evidenceHandled", "registryLocation", "containsPayments",
+        "journeyClassification")));
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    @Override
+    public Object decode(Response response, Type type) throws IOException {
+        if (response.body() == null) {
+            return emptyResponse();
+        }
+        try (InputStream body = response.body().asInputStream()) {
+            return decode(body);
+        }
+    }
+
+    public Map<String, Object> decode(InputStream body) throws IOException {
+        Map<String, Object> result = emptyResponse();
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return result;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("total".equals(field) && token == JsonToken.VALUE_NUMBER_INT) {
+                    result.put("total", parser.getIntValue());
+                } else if ("cases".equals(field) && token == JsonToken.START_ARRAY) {
+                    result.put("cases", readCases(parser));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<Map<String, Object>> readCases(JsonParser parser) throws IOException {
+        List<Map<String, Object>> cases = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.START_OBJECT) {
+                cases.add(readCase(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return cases;
+    }
+
+    private Map<String, Object> readCase(JsonParser parser) throws IOException {
+        Map<String, Object> ccdCase = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("case_data".equals(field) && token == JsonToken.START_OBJECT) {
+                ccdCase.put("case_data", readCaseData(parser));
+            } else if (CASE_FIELDS.contains(field) && token.isScalarValue()) {
+                // the case ids do not fit in an int, they are always read as long
+                ccdCase.put(field, "id".equals(field) && token == JsonToken.VALUE_NUMBER_INT
+                    ? parser.getLongValue()
+                    : readScalar(parser, token));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return ccdCase;
+    }
+
+    private Map<String, Object> readCaseData(JsonParser parser) throws IOException {
+        Map<String, Object> caseData = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (CASE_DATA_FIELDS.contains(field) && token.isScalarValue()) {
+                caseData.put(field, readScalar(parser, token));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return caseData;
+    }
+
+    private Object readScalar(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                return parser.getBooleanValue();
+            default:
+                return null;
+        }
+    }
+
+    private Map<String, Object> emptyResponse() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("total", 0);
+        response.put("cases", new ArrayList<>());
+        return response;
+    }
+}
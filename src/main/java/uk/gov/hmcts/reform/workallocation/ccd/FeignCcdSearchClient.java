@@ -0,0 +1,34 @@
+package uk.gov.hmcts.reform.workallocation.ccd;
+
+import feign.FeignException;
+import uk.gov.hmcts.reform.workallocation.exception.CcdConnectionException;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Searches through the blocking {@link CcdClient}, the search runs on the calling thread.
+ */
+public class FeignCcdSearchClient implements CcdSearchClient {
+
+    private final CcdClient ccdClient;
+
+    public FeignCcdSearchClient(CcdClient ccdClient) {
+        this.ccdClient = ccdClient;
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> searchCases(String authorisation, String serviceAuthorisation,
+                                                              String ctid, String body) {
+        try {
+            return CompletableFuture.completedFuture(
+                ccdClient.searchCases(authorisation, serviceAuthorisation, ctid, body));
+        } catch (FeignException e) {
+            // the status is negative when the request did not get a response
+            return CompletableFuture.failedFuture(new CcdConnectionException("Failed to connect ccd.",
+                Math.max(e.status(), CcdConnectionException.NO_STATUS), e));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(new CcdConnectionException("Failed to connect ccd.", e));
+        }
+    }
+}
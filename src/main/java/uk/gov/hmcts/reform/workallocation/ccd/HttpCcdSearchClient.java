@@ -0,0 +1,88 @@
+package uk.gov.hmcts.reform.workallocation.ccd;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import uk.gov.hmcts.reform.workallocation.exception.CcdConnectionException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Searches CCD with the non-blocking JDK http client. The searches share HTTP/2 connections, where the server
+ * supports it, and no thread waits while a search is in flight. The response is read into memory and then
+ * decoded by the streaming {@link CcdSearchResponseDecoder}.
+ */
+@Slf4j
+public class HttpCcdSearchClient implements CcdSearchClient {
+
+    private final HttpClient httpClient;
+    private final String searchUrl;
+    private final Duration requestTimeout;
+    private final CcdSearchResponseDecoder decoder = new CcdSearchResponseDecoder();
+
+    public HttpCcdSearchClient(HttpClient httpClient, String baseUrl, Duration requestTimeout) {
+        this.httpClient = httpClient;
+        this.searchUrl = baseUrl + "/searchCases?ctid=";
+        this.requestTimeout = requestTimeout;
+    }
+
+    public static HttpClient createHttpClient(Duration connectTimeout) {
+        return HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(connectTimeout)
+            .build();
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> searchCases(String authorisation, String serviceAuthorisation,
+                                                              String ctid, String body) {
+        URI uri = URI.create(searchUrl + URLEncoder.encode(ctid, StandardCharsets.UTF_8));
+        HttpRequest request = HttpRequest.newBuilder(uri)
+            .timeout(requestTimeout)
+            .header(HttpHeaders.AUTHORIZATION, authorisation)
+            .header(CcdClient.SERVICE_AUTH_HEADER, serviceAuthorisation)
+            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build();
+        CompletableFuture<HttpResponse<byte[]>> response;
+        try {
+            response = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (Exception e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        return response.handle((httpResponse, throwable) -> {
+            if (throwable != null) {
+                Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause() : throwable;
+                throw new CompletionException(new CcdConnectionException("Failed to connect ccd.", cause));
+            }
+            return decode(ctid, httpResponse);
+        });
+    }
+
+    private Map<String, Object> decode(String ctid, HttpResponse<byte[]> response) {
+        if (response.statusCode() != 200) {
+            log.error("CCD search of {} failed with status {} ({})", ctid, response.statusCode(),
+                response.version());
+            throw new CompletionException(new CcdConnectionException(
+                "CCD search failed with status " + response.statusCode(), response.statusCode(), null));
+        }
+        try {
+            return decoder.decode(new ByteArrayInputStream(response.body()));
+        } catch (IOException e) {
+            throw new CompletionException(new CcdConnectionException("Could not read the CCD search response", e));
+        }
+    }
+}
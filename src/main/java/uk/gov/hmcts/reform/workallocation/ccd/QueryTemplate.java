@@ -0,0 +1,61 @@
+package uk.gov.hmcts.reform.workallocation.ccd;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A CCD search query split around its placeholders when it is loaded, so rendering a query only appends
+ * the literal parts and the values to a single buffer instead of searching and replacing the whole template.
+ */
+public final class QueryTemplate {
+
+    public static final String FROM_PLACE_HOLDER = "[FROM]";
+    public static final String TO_PLACE_HOLDER = "[TO]";
+    public static final String PAGE_PLACE_HOLDER = "[PAGE]";
+
+    private static final String[] PLACE_HOLDERS = {FROM_PLACE_HOLDER, TO_PLACE_HOLDER, PAGE_PLACE_HOLDER};
+
+    // literals[i] is followed by the value of placeholders[i], the last literal closes the query
+    private final String[] literals;
+    private final int[] placeholders;
+    private final int literalsLength;
+
+    private QueryTemplate(List<String> literals, List<Integer> placeholders) {
+        this.literals = literals.toArray(new String[0]);
+        this.placeholders = placeholders.stream().mapToInt(Integer::intValue).toArray();
+        this.literalsLength = literals.stream().mapToInt(String::length).sum();
+    }
+
+    public static QueryTemplate compile(String template) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> placeholders = new ArrayList<>();
+        int position = 0;
+        while (true) {
+            int next = -1;
+            int placeholder = -1;
+            for (int i = 0; i < PLACE_HOLDERS.length; i++) {
+                int index = template.indexOf(PLACE_HOLDERS[i], position);
+                if (index >= 0 && (next < 0 || index < next)) {
+                    next = index;
+                    placeholder = i;
+                }
+            }
+            if (next < 0) {
+                literals.add(template.substring(position));
+                return new QueryTemplate(literals, placeholders);
+            }
+            literals.add(template.substring(position, next));
+            placeholders.add(placeholder);
+            position = next + PLACE_HOLDERS[placeholder].length();
+        }
+    }
+
+    public String render(CharSequence from, CharSequence to, CharSequence page) {
+        CharSequence[] values = {from, to, page};
+        StringBuilder query = new StringBuilder(literalsLength + placeholders.length * 32 + page.length());
+        for (int i = 0; i < placeholders.length; i++) {
+            query.append(literals[i]).append(values[placeholders[i]]);
+        }
+        return query.append(literals[placeholders.length]).toString();
+    }
+}
@@ -3,25 +3,37 @@ package uk.gov.hmcts.reform.workallocation.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.velocity.app.VelocityEngine;
 import org.apache.velocity.runtime.RuntimeConstants;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.util.ErrorHandler;
+import uk.gov.hmcts.reform.workallocation.ccd.CcdClient;
+import uk.gov.hmcts.reform.workallocation.ccd.CcdSearchClient;
+import uk.gov.hmcts.reform.workallocation.ccd.FeignCcdSearchClient;
+import uk.gov.hmcts.reform.workallocation.ccd.HttpCcdSearchClient;
 import uk.gov.hmcts.reform.workallocation.model.Task;
-import uk.gov.hmcts.reform.workallocation.queue.CtscQueueSupplier;
+import uk.gov.hmcts.reform.workallocation.queue.ContinuousQueueConsumer;
 import uk.gov.hmcts.reform.workallocation.queue.QueueClientSupplier;
 import uk.gov.hmcts.reform.workallocation.queue.QueueConsumer;
+import uk.gov.hmcts.reform.workallocation.queue.ServiceBusHealthIndicator;
 import uk.gov.hmcts.reform.workallocation.util.TaskErrorHandler;
 
+import java.time.Duration;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 @EnableScheduling
@@ -30,12 +42,46 @@ import java.util.Properties;
 public class AppConfig {
 
     @Bean
-    public CloseableHttpClient httpClient(@Value("${http.client.timeout}") int timeout) {
+    public PoolingHttpClientConnectionManager httpClientConnectionManager(
+        @Value("${http.client.max_total}") int maxTotal,
+        @Value("${http.client.max_per_route}") int maxPerRoute,
+        @Value("${http.client.time_to_live_seconds}") long timeToLiveSeconds) {
+        PoolingHttpClientConnectionManager connectionManager =
+            new PoolingHttpClientConnectionManager(timeToLiveSeconds, TimeUnit.SECONDS);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        // a pooled connection closed by the server is detected before it is handed out
+        connectionManager.setValidateAfterInactivity(2000);
+        return connectionManager;
+    }
+
+    @Bean
+    public CloseableHttpClient httpClient(@Value("${http.client.timeout}") int timeout,
+                                          @Value("${http.client.keep_alive_seconds}") long keepAliveSeconds,
+                                          @Value("${http.client.idle_eviction_seconds}") long idleEvictionSeconds,
+                                          PoolingHttpClientConnectionManager httpClientConnectionManager) {
         RequestConfig config = RequestConfig.custom()
             .setConnectTimeout(timeout * 1000)
             .setConnectionRequestTimeout(timeout * 1000)
             .setSocketTimeout(timeout * 1000).build();
-        return HttpClientBuilder.create().setDefaultRequestConfig(config).build();
+        // keep the connection for as long as the server allows it, or keep_alive_seconds if it does not say
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return duration > 0 ? duration : keepAliveSeconds * 1000;
+        };
+        return HttpClientBuilder.create()
+            .setConnectionManager(httpClientConnectionManager)
+            .setKeepAliveStrategy(keepAliveStrategy)
+            .evictExpiredConnections()
+            .evictIdleConnections(idleEvictionSeconds, TimeUnit.SECONDS)
+            .setDefaultRequestConfig(config)
+            .build();
+    }
+
+    @Bean
+    public PoolingHttpClientConnectionManagerMetricsBinder httpClientConnectionManagerMetrics(
+        PoolingHttpClientConnectionManager httpClientConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(httpClientConnectionManager, "feign");
     }
 
     @Bean
@@ -61,12 +107,17 @@ public class AppConfig {
     }
 
     @Bean
-    public CtscQueueSupplier getQueueClientSupplier(
+    public QueueClientSupplier getQueueClientSupplier(
         @Value("${servicebus.queue.connectionString}") String connectionString,
         @Value("${servicebus.queue.entityPath}") String entityPath) {
         return new QueueClientSupplier(connectionString, entityPath);
     }
 
+    @Bean
+    public ServiceBusHealthIndicator serviceBusHealthIndicator(QueueClientSupplier queueClientSupplier) {
+        return new ServiceBusHealthIndicator(queueClientSupplier);
+    }
+
     @Bean
     public QueueConsumer<Task> createTaskQueueConsumer(
         @Value("${servicebus.queue.connectionString}") String connectionString,
@@ -75,14 +126,37 @@ public class AppConfig {
         return new QueueConsumer<>(Task.class);
     }
 
+    @Bean
+    @ConditionalOnProperty(name = "servicebus.queue.consumer_mode", havingValue = "continuous")
+    public ContinuousQueueConsumer continuousQueueConsumer(QueueConsumer<Task> queueConsumer,
+        @Value("${servicebus.queue.reconnect_seconds}") long reconnectSeconds) {
+        return new ContinuousQueueConsumer(queueConsumer, reconnectSeconds);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "ccd.search.client", havingValue = "feign", matchIfMissing = true)
+    public CcdSearchClient feignCcdSearchClient(CcdClient ccdClient) {
+        return new FeignCcdSearchClient(ccdClient);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "ccd.search.client", havingValue = "http2")
+    public CcdSearchClient httpCcdSearchClient(@Value("${ccd.baseUrl}") String baseUrl,
+                                               @Value("${http.client.timeout}") int timeout,
+                                               @Value("${ccd.search.timeout_seconds}") long searchTimeoutSeconds) {
+        return new HttpCcdSearchClient(HttpCcdSearchClient.createHttpClient(Duration.ofSeconds(timeout)), baseUrl,
+            Duration.ofSeconds(searchTimeoutSeconds));
+    }
+
     @Bean
     public ErrorHandler taskErrorHandler() {
         return new TaskErrorHandler();
     }
 
     @Bean
-    public ThreadPoolTaskScheduler scheduler() {
+    public ThreadPoolTaskScheduler scheduler(@Value("${service.scheduler_pool_size}") int poolSize) {
         ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
         scheduler.setErrorHandler(taskErrorHandler());
         return scheduler;
     }
@@ -0,0 +1,59 @@
+package uk.gov.hmcts.reform.workallocation.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import uk.gov.hmcts.reform.workallocation.model.Task;
+import uk.gov.hmcts.reform.workallocation.services.CaseType;
+import uk.gov.hmcts.reform.workallocation.services.CaseTypeRegistry;
+import uk.gov.hmcts.reform.workallocation.services.CcdConnectorService;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The case types polled from CCD. A case type is switched off with {@code ccd.case_types.<name>.enabled: false},
+ * onboarding a new one takes an entry here and its query in {@code ccd/queries}.
+ */
+@Configuration
+public class CaseTypeConfiguration {
+
+    private static final String ENABLED_PROPERTY = "ccd.case_types.%s.enabled";
+
+    @Bean
+    public CaseTypeRegistry caseTypeRegistry(Environment environment) {
+        return new CaseTypeRegistry(defaultCaseTypes(),
+            name -> environment.getProperty(String.format(ENABLED_PROPERTY, name), Boolean.class, true));
+    }
+
+    public static List<CaseType> defaultCaseTypes() {
+        return Arrays.asList(
+            caseType("divorce", CcdConnectorService.CASE_TYPE_ID_DIVORCE, CcdConnectorService.QUERY_DIVORCE,
+                Task::fromCcdDivorceCase),
+            caseType("divorce_exception", CcdConnectorService.CASE_TYPE_ID_DIVORCE_EXCEPTION,
+                CcdConnectorService.QUERY_DIVORCE_EXCEPTION, Task::fromCcdDivorceCase),
+            caseType("divorce_evidence", CcdConnectorService.CASE_TYPE_ID_DIVORCE,
+                CcdConnectorService.QUERY_DIVORCE_EVIDENCE, Task::fromCcdDivorceEvidenceCase),
+            caseType("probate_gop", CcdConnectorService.PROBATE_CASE_TYPE_ID_GOP,
+                CcdConnectorService.QUERY_PROBATE_GOP, Task::fromCcdProbateCase),
+            caseType("probate_caveat", CcdConnectorService.PROBATE_CASE_TYPE_ID_CAVEAT,
+                CcdConnectorService.QUERY_PROBATE_CAVEAT, Task::fromCcdProbateCase),
+            caseType("probate_bsp", CcdConnectorService.PROBATE_CASE_TYPE_ID_BSP_EXCEPTION,
+                CcdConnectorService.QUERY_PROBATE_BSP_EXCEPTION, Task::fromCcdProbateCase),
+            caseType("fr", CcdConnectorService.FR_CASE_TYPE, CcdConnectorService.QUERY_FR,
+                Task::fromCcdFinancialRemedyCase),
+            caseType("fr_exception", CcdConnectorService.FR_EXCEPTION_CASE_TYPE,
+                CcdConnectorService.QUERY_FR_EXCEPTION, Task::fromCcdFinancialRemedyCase)
+        );
+    }
+
+    private static CaseType caseType(String name, String caseTypeId, String queryName,
+                                     CaseType.CaseTransformer transformer) {
+        return CaseType.builder()
+            .name(name)
+            .caseTypeId(caseTypeId)
+            .queryName(queryName)
+            .transformer(transformer)
+            .build();
+    }
+}
@@ -0,0 +1,17 @@
+package uk.gov.hmcts.reform.workallocation.config;
+
+import feign.codec.Decoder;
+import org.springframework.context.annotation.Bean;
+import uk.gov.hmcts.reform.workallocation.ccd.CcdSearchResponseDecoder;
+
+/**
+ * Decodes the CCD search responses with the streaming {@link CcdSearchResponseDecoder}.
+ * Like {@link FeignClientConfiguration} it is only picked up by the feign client that refers to it.
+ */
+public class CcdFeignConfiguration {
+
+    @Bean
+    public Decoder feignDecoder() {
+        return new CcdSearchResponseDecoder();
+    }
+}
@@ -0,0 +1,18 @@
+package uk.gov.hmcts.reform.workallocation.config;
+
+import feign.Client;
+import feign.httpclient.ApacheHttpClient;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Makes the feign clients send their requests through the pooled http client of {@link AppConfig}.
+ * It is not a {@code @Configuration}, it is only picked up by the feign clients that refer to it.
+ */
+public class FeignClientConfiguration {
+
+    @Bean
+    public Client feignClient(CloseableHttpClient httpClient) {
+        return new ApacheHttpClient(httpClient);
+    }
+}
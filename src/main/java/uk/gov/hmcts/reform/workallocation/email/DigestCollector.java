@@ -0,0 +1,152 @@
+package uk.gov.hmcts.reform.workallocation.email;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import uk.gov.hmcts.reform.workallocation.model.Task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+
+/**
+ * Collects the consumed tasks and sends one digest email per jurisdiction and state instead of one email per task.
+ * A digest is sent when its group reaches {@code maxTasks} or {@code windowSeconds} after its first task arrived.
+ * Every task gets a future that completes when its digest was sent, the queue message is only completed then.
+ * If the digest can not be sent, or the application stops first, the futures fail and the messages are given
+ * back to the queue.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "email.digest.enabled", havingValue = "true")
+public class DigestCollector {
+
+    private final IEmailSendingService emailSendingService;
+    private final SmtpPermits smtpPermits;
+    private final String deeplinkBaseUrl;
+    private final int maxTasks;
+    private final long windowSeconds;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final Map<DigestKey, Digest> digests = new HashMap<>();
+
+    @Autowired
+    public DigestCollector(IEmailSendingService emailSendingService, SmtpPermits smtpPermits,
+                           @Value("${ccd.deeplinkBaseUrl}") String deeplinkBaseUrl,
+                           @Value("${email.digest.max_tasks}") int maxTasks,
+                           @Value("${email.digest.window_seconds}") long windowSeconds) {
+        this.emailSendingService = emailSendingService;
+        this.smtpPermits = smtpPermits;
+        this.deeplinkBaseUrl = deeplinkBaseUrl;
+        this.maxTasks = maxTasks;
+        this.windowSeconds = windowSeconds;
+    }
+
+    /**
+     * Adds the task to its digest, the returned future completes when the digest was sent.
+     */
+    public CompletableFuture<Void> add(Task task) {
+        DigestKey key = new DigestKey(task.getJurisdiction(), task.getState());
+        CompletableFuture<Void> sent = new CompletableFuture<>();
+        synchronized (digests) {
+            Digest digest = digests.get(key);
+            if (digest == null) {
+                Digest newDigest = new Digest();
+                digests.put(key, newDigest);
+                scheduler.schedule(() -> flush(key, newDigest), windowSeconds, TimeUnit.SECONDS);
+                digest = newDigest;
+            }
+            digest.tasks.add(task);
+            digest.sent.add(sent);
+            if (digest.tasks.size() >= maxTasks) {
+                Digest full = digest;
+                scheduler.execute(() -> flush(key, full));
+            }
+        }
+        return sent;
+    }
+
+    /**
+     * Sends all pending digests without waiting for their window, the returned future completes when they were
+     * sent or failed.
+     */
+    public CompletableFuture<Void> flushAll() {
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        synchronized (digests) {
+            digests.forEach((key, digest) -> {
+                pending.addAll(digest.sent);
+                scheduler.execute(() -> flush(key, digest));
+            });
+        }
+        return CompletableFuture.allOf(pending.stream()
+            .map(sent -> sent.exceptionally(throwable -> null))
+            .toArray(CompletableFuture[]::new));
+    }
+
+    public int getPendingCount() {
+        synchronized (digests) {
+            return digests.values().stream().mapToInt(digest -> digest.tasks.size()).sum();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        List<Digest> pending;
+        synchronized (digests) {
+            pending = new ArrayList<>(digests.values());
+            digests.clear();
+        }
+        // the messages of the pending digests are still locked, they go back to the queue instead of being sent
+        // by an application that is stopping
+        IllegalStateException stopped = new IllegalStateException("the digest was not sent before shutdown");
+        pending.forEach(digest -> digest.sent.forEach(sent -> sent.completeExceptionally(stopped)));
+    }
+
+    private void flush(DigestKey key, Digest digest) {
+        synchronized (digests) {
+            // the digest may have been sent already because it was full
+            if (digests.get(key) != digest) {
+                return;
+            }
+            digests.remove(key);
+        }
+        try {
+            smtpPermits.send("digest of " + key,
+                () -> emailSendingService.sendDigest(digest.tasks, deeplinkBaseUrl));
+            log.info("Sent digest of {} tasks for {}", digest.tasks.size(), key);
+            digest.sent.forEach(sent -> sent.complete(null));
+        } catch (Exception e) {
+            log.error("Failed to send digest of {} tasks for {}, giving them back to the queue: {}",
+                digest.tasks.size(), key, digest.tasks.stream().map(Task::getId).collect(Collectors.toList()), e);
+            digest.sent.forEach(sent -> sent.completeExceptionally(e));
+        }
+    }
+
+    private static class Digest {
+        private final List<Task> tasks = new ArrayList<>();
+        private final List<CompletableFuture<Void>> sent = new ArrayList<>();
+    }
+
+    @EqualsAndHashCode
+    @ToString
+    static class DigestKey {
+        private final String jurisdiction;
+        private final String state;
+
+        DigestKey(String jurisdiction, String state) {
+            this.jurisdiction = jurisdiction;
+            this.state = state;
+        }
+    }
+}
@@ -2,7 +2,14 @@ package uk.gov.hmcts.reform.workallocation.email;
 
 import uk.gov.hmcts.reform.workallocation.model.Task;
 
+import java.util.List;
+
 public interface IEmailSendingService {
 
     void sendEmail(Task task, String deeplinkBaseUrl) throws Exception;
+
+    /**
+     * Sends one email listing all the given tasks, the tasks share the same jurisdiction and state.
+     */
+    void sendDigest(List<Task> tasks, String deeplinkBaseUrl) throws Exception;
 }
@@ -0,0 +1,47 @@
+package uk.gov.hmcts.reform.workallocation.email;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the emails sent at the same time to the SMTP connections available. The single task emails and the
+ * digests share the permits, so neither can saturate the SMTP server.
+ */
+@Component
+public class SmtpPermits {
+
+    private final Semaphore permits;
+    private final long acquireTimeoutSeconds;
+
+    @Autowired
+    public SmtpPermits(@Value("${smtp.max_connections}") int maxConnections,
+                       @Value("${smtp.acquire_timeout_seconds}") long acquireTimeoutSeconds) {
+        this.permits = new Semaphore(maxConnections, true);
+        this.acquireTimeoutSeconds = acquireTimeoutSeconds;
+    }
+
+    /**
+     * Sends while holding a permit.
+     *
+     * @throws IllegalStateException when no permit became free within the acquire timeout
+     */
+    public void send(String description, EmailSend send) throws Exception {
+        if (!permits.tryAcquire(acquireTimeoutSeconds, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("no SMTP connection available for " + description);
+        }
+        try {
+            send.send();
+        } finally {
+            permits.release();
+        }
+    }
+
+    @FunctionalInterface
+    public interface EmailSend {
+        void send() throws Exception;
+    }
+}
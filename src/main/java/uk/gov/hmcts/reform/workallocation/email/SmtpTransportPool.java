@@ -0,0 +1,137 @@
+package uk.gov.hmcts.reform.workallocation.email;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Transport;
+
+/**
+ * Keeps authenticated SMTP connections open and reuses them across messages, so the connect, STARTTLS and
+ * login round trips are paid once per connection instead of once per email.
+ * At most {@code maxConnections} connections are in use at the same time, idle connections are closed
+ * after {@code idleTimeoutSeconds} and a connection dropped by the server is replaced on the next send.
+ */
+@Slf4j
+public class SmtpTransportPool implements AutoCloseable {
+
+    private final TransportFactory transportFactory;
+    private final long idleTimeoutMillis;
+    private final Semaphore permits;
+    private final BlockingDeque<PooledTransport> idleTransports = new LinkedBlockingDeque<>();
+
+    public SmtpTransportPool(TransportFactory transportFactory, int maxConnections, long idleTimeoutSeconds) {
+        this.transportFactory = transportFactory;
+        this.idleTimeoutMillis = TimeUnit.SECONDS.toMillis(idleTimeoutSeconds);
+        this.permits = new Semaphore(maxConnections, true);
+    }
+
+    public void send(Message message) throws MessagingException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for an SMTP connection", e);
+        }
+        try {
+            PooledTransport pooled = borrow();
+            try {
+                pooled.transport.sendMessage(message, message.getAllRecipients());
+            } catch (SendFailedException e) {
+                // the message was rejected, the connection itself is fine
+                giveBack(pooled);
+                throw e;
+            } catch (MessagingException e) {
+                log.warn("SMTP connection failed, reconnecting", e);
+                closeQuietly(pooled);
+                pooled = new PooledTransport(transportFactory.connect());
+                try {
+                    pooled.transport.sendMessage(message, message.getAllRecipients());
+                } catch (SendFailedException sendFailed) {
+                    giveBack(pooled);
+                    throw sendFailed;
+                } catch (MessagingException retryFailed) {
+                    closeQuietly(pooled);
+                    throw retryFailed;
+                }
+            }
+            giveBack(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes the connections that have not been used for longer than the idle timeout.
+     */
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledTransport> iterator = idleTransports.iterator();
+        while (iterator.hasNext()) {
+            PooledTransport pooled = iterator.next();
+            if (now - pooled.lastUsed >= idleTimeoutMillis && idleTransports.removeFirstOccurrence(pooled)) {
+                closeQuietly(pooled);
+            }
+        }
+    }
+
+    public int getIdleCount() {
+        return idleTransports.size();
+    }
+
+    @Override
+    public void close() {
+        PooledTransport pooled;
+        while ((pooled = idleTransports.pollFirst()) != null) {
+            closeQuietly(pooled);
+        }
+    }
+
+    private PooledTransport borrow() throws MessagingException {
+        long now = System.currentTimeMillis();
+        PooledTransport pooled;
+        // the most recently used connection is the least likely to have been dropped by the server
+        while ((pooled = idleTransports.pollFirst()) != null) {
+            if (now - pooled.lastUsed < idleTimeoutMillis) {
+                return pooled;
+            }
+            closeQuietly(pooled);
+        }
+        return new PooledTransport(transportFactory.connect());
+    }
+
+    private void giveBack(PooledTransport pooled) {
+        pooled.lastUsed = System.currentTimeMillis();
+        idleTransports.offerFirst(pooled);
+    }
+
+    private void closeQuietly(PooledTransport pooled) {
+        try {
+            pooled.transport.close();
+        } catch (MessagingException e) {
+            log.debug("failed to close SMTP connection", e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface TransportFactory {
+        Transport connect() throws MessagingException;
+    }
+
+    private static class PooledTransport {
+
+        private final Transport transport;
+        private long lastUsed;
+
+        PooledTransport(Transport transport) {
+            this.transport = transport;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+}
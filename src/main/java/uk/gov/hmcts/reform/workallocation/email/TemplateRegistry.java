@@ -0,0 +1,80 @@
+package uk.gov.hmcts.reform.workallocation.email;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.exception.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parses the email templates once and hands out the compiled templates by jurisdiction.
+ * A parsed velocity template can be merged from several threads at the same time.
+ * With hot reload switched on the templates are parsed again on every call, so they can be edited
+ * without restarting the application.
+ */
+@Component
+@Slf4j
+public class TemplateRegistry {
+
+    public static final String DEFAULT_TEMPLATE = "default";
+    public static final String DIGEST_TEMPLATE = "digest";
+
+    private static final String TEMPLATE_DIR = "templates/";
+    private static final String TEMPLATE_SUFFIX = ".vm";
+    private static final String[] PRELOADED_TEMPLATES = {DEFAULT_TEMPLATE, DIGEST_TEMPLATE, "divorce", "probate"};
+
+    private final VelocityEngine velocityEngine;
+    private final boolean hotReload;
+    private final Map<String, Template> templates = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TemplateRegistry(VelocityEngine velocityEngine,
+                            @Value("${email.templates.hot_reload}") boolean hotReload) {
+        this.velocityEngine = velocityEngine;
+        this.hotReload = hotReload;
+        for (String name : PRELOADED_TEMPLATES) {
+            templates.put(name, load(name));
+        }
+    }
+
+    /**
+     * Returns the template of the jurisdiction, or the default template when the jurisdiction is not known.
+     */
+    public Template getTemplate(String jurisdiction) {
+        return get(jurisdiction != null ? jurisdiction.toLowerCase() : DEFAULT_TEMPLATE);
+    }
+
+    public Template getDigestTemplate() {
+        return get(DIGEST_TEMPLATE);
+    }
+
+    private Template get(String name) {
+        if (hotReload) {
+            return loadOrDefault(name);
+        }
+        return templates.computeIfAbsent(name, this::loadOrDefault);
+    }
+
+    private Template loadOrDefault(String name) {
+        try {
+            return load(name);
+        } catch (ResourceNotFoundException e) {
+            if (DEFAULT_TEMPLATE.equals(name)) {
+                throw e;
+            }
+            log.warn("There is no email template for {}, using the default template", name);
+            // the default template is preloaded, it is not computed again inside computeIfAbsent
+            return hotReload ? load(DEFAULT_TEMPLATE) : templates.get(DEFAULT_TEMPLATE);
+        }
+    }
+
+    private Template load(String name) {
+        log.info("Loading email template {}", name);
+        return velocityEngine.getTemplate(TEMPLATE_DIR + name + TEMPLATE_SUFFIX, "UTF-8");
+    }
+}
@@ -1,7 +1,37 @@
 package uk.gov.hmcts.reform.workallocation.exception;
 
 public class CcdConnectionException extends Exception {
+
+    // used when CCD did not answer with a status, e.g. the connection failed
+    public static final int NO_STATUS = 0;
+
+    private final int status;
+
     public CcdConnectionException(String message, Throwable cause) {
+        this(message, NO_STATUS, cause);
+    }
+
+    public CcdConnectionException(String message, int status, Throwable cause) {
         super(message, cause);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * CCD rejected the tokens of the request.
+     */
+    public boolean isAuthFailure() {
+        return status == 401 || status == 403;
+    }
+
+    /**
+     * Trying the same request again may succeed, i.e. the connection failed, CCD timed out, throttled the request
+     * or failed itself. Any other client error fails the same way again.
+     */
+    public boolean isRetryable() {
+        return status == NO_STATUS || status == 408 || status == 429 || status >= 500;
     }
 }
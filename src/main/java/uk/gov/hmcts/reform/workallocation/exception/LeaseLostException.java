@@ -0,0 +1,7 @@
+package uk.gov.hmcts.reform.workallocation.exception;
+
+public class LeaseLostException extends RuntimeException {
+    public LeaseLostException(String message) {
+        super(message);
+    }
+}
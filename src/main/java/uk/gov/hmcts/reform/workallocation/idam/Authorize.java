@@ -13,14 +13,17 @@ public class Authorize {
     private String code;
     private String accessToken;
     private String refreshToken;
+    private Long expiresIn;
 
     public Authorize(@JsonProperty("default-url") String defaultUrl,
                      @JsonProperty("code") String code,
                      @JsonProperty("access_token") String accessToken,
-                     @JsonProperty("refresh_token") String refreshToken) {
+                     @JsonProperty("refresh_token") String refreshToken,
+                     @JsonProperty("expires_in") Long expiresIn) {
         this.defaultUrl = defaultUrl;
         this.code = code;
         this.accessToken = accessToken;
         this.refreshToken = refreshToken;
+        this.expiresIn = expiresIn;
     }
 }
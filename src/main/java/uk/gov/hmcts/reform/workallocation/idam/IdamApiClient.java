@@ -8,8 +8,9 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
+import uk.gov.hmcts.reform.workallocation.config.FeignClientConfiguration;
 
-@FeignClient(name = "idam-api", url = "${auth.idam.client.baseUrl}")
+@FeignClient(name = "idam-api", url = "${auth.idam.client.baseUrl}", configuration = FeignClientConfiguration.class)
 public interface IdamApiClient {
 
     @RequestMapping(
@@ -1,22 +1,28 @@
 package uk.gov.hmcts.reform.workallocation.idam;
 
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import uk.gov.hmcts.reform.authorisation.generators.AuthTokenGenerator;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Base64;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.PreDestroy;
 
 @Service
 @Slf4j
 public class IdamService {
-    public static final int ONE_HOUR = 1000 * 60 * 60;
+    // used when IDAM does not tell how long the token lives
+    public static final long DEFAULT_EXPIRES_IN_SECONDS = 60 * 60;
 
     private final AuthTokenGenerator authTokenGenerator;
     private final IdamApiClient idamApiClient;
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor();
+    private final RefreshingTokenCache<IdamUserToken> idamTokenCache;
 
     @Value("${idam.service-user.email}")
     private String idamOauth2UserEmail;
@@ -36,14 +42,13 @@ public class IdamService {
     @Value("${server-url}")
     private String serverUrl;
 
-    // Tactical idam token caching solution implemented
-    // SSCS-5895 - will deliver the strategic caching solution
-    private String cachedToken;
-
     @Autowired
-    IdamService(AuthTokenGenerator authTokenGenerator, IdamApiClient idamApiClient) {
+    IdamService(AuthTokenGenerator authTokenGenerator, IdamApiClient idamApiClient,
+                @Value("${idam.token_cache.refresh_ahead_seconds}") long refreshAheadSeconds) {
         this.authTokenGenerator = authTokenGenerator;
         this.idamApiClient = idamApiClient;
+        this.idamTokenCache = new RefreshingTokenCache<>("idam token", this::requestIdamOauth2Token,
+            Duration.ofSeconds(refreshAheadSeconds), refreshExecutor);
     }
 
     public String generateServiceAuthorization() throws IdamConnectionException {
@@ -62,7 +67,36 @@ public class IdamService {
         }
     }
 
+    /**
+     * Returns the cached idam token, a new token is only requested when the cached one is about to expire.
+     */
     public String getIdamOauth2Token() throws IdamConnectionException {
+        return idamTokenCache.get().getToken();
+    }
+
+    public void invalidateIdamOauth2Token() {
+        idamTokenCache.invalidate();
+    }
+
+    public IdamTokens getIdamTokens() throws IdamConnectionException {
+
+        // the user id is looked up once when the token is requested and cached with it
+        IdamUserToken idamUserToken = idamTokenCache.get();
+
+        return IdamTokens.builder()
+                .idamOauth2Token(idamUserToken.getToken())
+                .serviceAuthorization(generateServiceAuthorization())
+                .userId(idamUserToken.getUserId())
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private RefreshingTokenCache.ExpiringToken<IdamUserToken> requestIdamOauth2Token()
+        throws IdamConnectionException {
         String redirectUrl = serverUrl + idamOauth2RedirectUrl;
         try {
             log.info("Requesting idam token...");
@@ -88,38 +122,17 @@ public class IdamService {
                 " "
             );
 
-            cachedToken = "Bearer " + authorizeToken.getAccessToken();
+            long expiresIn = authorizeToken.getExpiresIn() != null
+                ? authorizeToken.getExpiresIn()
+                : DEFAULT_EXPIRES_IN_SECONDS;
 
-            log.info("Requesting idam token successful");
+            log.info("Requesting idam token successful, it expires in {} seconds", expiresIn);
 
-            return cachedToken;
+            String token = "Bearer " + authorizeToken.getAccessToken();
+            return new RefreshingTokenCache.ExpiringToken<>(new IdamUserToken(token, getUserId(token)),
+                Instant.now().plusSeconds(expiresIn));
         } catch (Exception e) {
             throw new IdamConnectionException("Requesting idam token failed", e);
         }
     }
-
-    @Scheduled(fixedRate = ONE_HOUR)
-    public void evictCacheAtIntervals() {
-        log.info("Evicting idam token cache");
-        cachedToken = null;
-    }
-
-    public IdamTokens getIdamTokens() throws IdamConnectionException {
-
-        String idamOauth2Token;
-
-        if (StringUtils.isEmpty(cachedToken)) {
-            log.info("No cached IDAM token found, requesting from IDAM service.");
-            idamOauth2Token =  getIdamOauth2Token();
-        } else {
-            log.info("Using cached IDAM token.");
-            idamOauth2Token =  cachedToken;
-        }
-
-        return IdamTokens.builder()
-                .idamOauth2Token(idamOauth2Token)
-                .serviceAuthorization(generateServiceAuthorization())
-                .userId(getUserId(idamOauth2Token))
-                .build();
-    }
 }
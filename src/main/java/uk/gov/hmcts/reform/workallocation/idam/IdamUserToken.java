@@ -0,0 +1,12 @@
+package uk.gov.hmcts.reform.workallocation.idam;
+
+import lombok.Value;
+
+/**
+ * The idam token of the service user together with the id of the user it was issued to.
+ */
+@Value
+public class IdamUserToken {
+    String token;
+    String userId;
+}
@@ -0,0 +1,125 @@
+package uk.gov.hmcts.reform.workallocation.idam;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Caches a token until it expires. Once the token is close to its expiry a new one is loaded in the background
+ * while the current one is still handed out, so callers only wait for IDAM when there is no valid token at all.
+ * Concurrent callers share a single in-flight load and reading a valid token does not take a lock.
+ */
+@Slf4j
+public class RefreshingTokenCache<T> {
+
+    private final String name;
+    private final TokenLoader<T> loader;
+    private final Duration refreshAhead;
+    private final Executor executor;
+    private final Clock clock;
+
+    private final AtomicReference<CachedToken<T>> current = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<CachedToken<T>>> inFlight = new AtomicReference<>();
+
+    public RefreshingTokenCache(String name, TokenLoader<T> loader, Duration refreshAhead, Executor executor) {
+        this(name, loader, refreshAhead, executor, Clock.systemUTC());
+    }
+
+    RefreshingTokenCache(String name, TokenLoader<T> loader, Duration refreshAhead, Executor executor,
+                         Clock clock) {
+        this.name = name;
+        this.loader = loader;
+        this.refreshAhead = refreshAhead;
+        this.executor = executor;
+        this.clock = clock;
+    }
+
+    public T get() throws IdamConnectionException {
+        CachedToken<T> token = current.get();
+        Instant now = clock.instant();
+        if (token != null && now.isBefore(token.getExpiresAt())) {
+            if (!now.isBefore(token.getRefreshAt())) {
+                refresh();
+            }
+            return token.getValue();
+        }
+        try {
+            return refresh().join().getValue();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IdamConnectionException) {
+                throw (IdamConnectionException) e.getCause();
+            }
+            throw new IdamConnectionException("Failed to load " + name, e.getCause());
+        }
+    }
+
+    /**
+     * Drops the cached token, the next call loads a new one.
+     */
+    public void invalidate() {
+        current.set(null);
+    }
+
+    private CompletableFuture<CachedToken<T>> refresh() {
+        CompletableFuture<CachedToken<T>> future = new CompletableFuture<>();
+        if (!inFlight.compareAndSet(null, future)) {
+            CompletableFuture<CachedToken<T>> running = inFlight.get();
+            if (running != null) {
+                return running;
+            }
+            // the load finished in the meantime, the new token is in place
+            CachedToken<T> token = current.get();
+            return token != null && clock.instant().isBefore(token.getExpiresAt())
+                ? CompletableFuture.completedFuture(token)
+                : refresh();
+        }
+        executor.execute(() -> {
+            try {
+                log.info("Loading {}", name);
+                ExpiringToken<T> loaded = loader.load();
+                CachedToken<T> token = cache(loaded);
+                current.set(token);
+                future.complete(token);
+            } catch (Exception e) {
+                log.error("Loading {} failed", name, e);
+                future.completeExceptionally(e);
+            } finally {
+                inFlight.set(null);
+            }
+        });
+        return future;
+    }
+
+    private CachedToken<T> cache(ExpiringToken<T> loaded) {
+        Instant now = clock.instant();
+        Duration lifetime = Duration.between(now, loaded.getExpiresAt());
+        // short lived tokens are refreshed half way through their lifetime
+        Duration ahead = refreshAhead.compareTo(lifetime.dividedBy(2)) < 0 ? refreshAhead : lifetime.dividedBy(2);
+        return new CachedToken<>(loaded.getValue(), loaded.getExpiresAt(), loaded.getExpiresAt().minus(ahead));
+    }
+
+    @FunctionalInterface
+    public interface TokenLoader<T> {
+        ExpiringToken<T> load() throws IdamConnectionException;
+    }
+
+    @Value
+    public static class ExpiringToken<T> {
+        T value;
+        Instant expiresAt;
+    }
+
+    @Value
+    private static class CachedToken<T> {
+        T value;
+        Instant expiresAt;
+        Instant refreshAt;
+    }
+}
@@ -0,0 +1,146 @@
+package uk.gov.hmcts.reform.workallocation.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Works out the work allocation state of a probate case from its CCD state and case data.
+ * The rules are compiled into a table keyed on the CCD state and the case data fields that state depends on,
+ * so a case is classified with one lookup instead of walking through the rules.
+ * All the rules of a CCD state have to look at the same case data fields.
+ */
+public final class ProbateStateClassifier {
+
+    public static final ProbateStateClassifier PROBATE = new ProbateStateClassifier(Arrays.asList(
+        rule("CaseCreated").then("CaseCreated"),
+
+        rule("CasePrinted").with("applicationType", "Personal").with("caseType", "gop")
+            .with("evidenceHandled", "No").with("registryLocation", "ctsc")
+            .then("AwaitingDocumentationPersonalEvidenceNotHandled"),
+        rule("CasePrinted").with("applicationType", "Solicitor").with("caseType", "gop")
+            .with("evidenceHandled", "No").with("registryLocation", "ctsc")
+            .then("AwaitingDocumentationSolicitorEvidenceNotHandled"),
+
+        rule("BOReadyForExamination").with("applicationType", "Personal").with("caseType", "gop")
+            .with("evidenceHandled", "No").with("registryLocation", "ctsc")
+            .then("ReadyForExaminationPersonal"),
+        rule("BOReadyForExamination").with("applicationType", "Solicitor").with("caseType", "gop")
+            .with("evidenceHandled", "No").with("registryLocation", "ctsc")
+            .then("ReadyForExaminationSolicitor"),
+
+        rule("BOCaseStopped").with("applicationType", "Personal").with("caseType", "gop")
+            .with("evidenceHandled", "No").then("CaseStoppedPersonalEvidenceNotHandled"),
+        rule("BOCaseStopped").with("applicationType", "Solicitor").with("caseType", "gop")
+            .with("evidenceHandled", "No").then("CaseStoppedSolicitorsEvidenceNotHandled"),
+        rule("BOCaseStopped").with("applicationType", "Personal").with("caseType", "intestacy")
+            .with("evidenceHandled", "No").then("CaseStoppedPersonalIntestacyEvidenceNotHandled"),
+        rule("BOCaseStopped").with("applicationType", "Solicitor").with("caseType", "intestacy")
+            .with("evidenceHandled", "No").then("CaseStoppedSolicitorsIntestacyEvidenceNotHandled"),
+        rule("BOCaseStopped").with("applicationType", "Personal").with("caseType", "gop")
+            .with("evidenceHandled", "Yes").then("CaseStoppedPersonalEvidenceHandled"),
+        rule("BOCaseStopped").with("applicationType", "Solicitor").with("caseType", "gop")
+            .with("evidenceHandled", "Yes").then("CaseStoppedSolicitorsEvidenceHandled"),
+        rule("BOCaseStopped").with("applicationType", "Personal").with("caseType", "intestacy")
+            .with("evidenceHandled", "Yes").then("CaseStoppedPersonalIntestacyEvidenceHandled"),
+        rule("BOCaseStopped").with("applicationType", "Solicitor").with("caseType", "intestacy")
+            .with("evidenceHandled", "Yes").then("CaseStoppedSolicitorsIntestacyEvidenceHandled"),
+
+        rule("CaveatRaised").with("applicationType", "Personal").then("CaveatPersonal"),
+        rule("CaveatRaised").with("applicationType", "Solicitor").then("CaveatSolicitor"),
+
+        rule("ScannedRecordReceived").with("containsPayments", "No")
+            .with("journeyClassification", "NEW_APPLICATION")
+            .then("BulkScanNewApplicationsReceivedWithoutPayments"),
+        rule("ScannedRecordReceived").with("containsPayments", "Yes")
+            .with("journeyClassification", "NEW_APPLICATION")
+            .then("BulkScanNewApplicationsReceivedWithPayments"),
+        rule("ScannedRecordReceived").with("containsPayments", "No")
+            .with("journeyClassification", "SUPPLEMENTARY_EVIDENCE", "SUPPLEMENTARY_EVIDENCE_WITH_OCR")
+            .then("BulkScanSupplementaryEvidenceWithoutPayments")
+    ));
+
+    private final Map<String, List<String>> fieldsByState = new HashMap<>();
+    private final Map<List<String>, String> states = new HashMap<>();
+
+    public ProbateStateClassifier(List<Rule> rules) {
+        for (Rule rule : rules) {
+            List<String> fields = new ArrayList<>(rule.conditions.keySet());
+            List<String> knownFields = fieldsByState.putIfAbsent(rule.state, fields);
+            if (knownFields != null && !knownFields.equals(fields)) {
+                throw new IllegalArgumentException("The rules of " + rule.state + " look at different fields: "
+                    + knownFields + " and " + fields);
+            }
+            for (List<String> key : rule.keys()) {
+                String existing = states.putIfAbsent(key, rule.result);
+                if (existing != null && !existing.equals(rule.result)) {
+                    throw new IllegalArgumentException("Conflicting rules for " + key + ": " + existing + " and "
+                        + rule.result);
+                }
+            }
+        }
+    }
+
+    public static Rule rule(String state) {
+        return new Rule(state);
+    }
+
+    /**
+     * Returns the work allocation state of the case, or the CCD state when no rule matches.
+     */
+    public String classify(String state, Map<String, Object> caseData) {
+        List<String> fields = fieldsByState.get(state);
+        if (fields == null) {
+            return state;
+        }
+        List<String> key = new ArrayList<>(fields.size() + 1);
+        key.add(state);
+        for (String field : fields) {
+            Object value = caseData != null ? caseData.get(field) : null;
+            key.add(value instanceof String ? (String) value : null);
+        }
+        return states.getOrDefault(key, state);
+    }
+
+    public static final class Rule {
+
+        private final String state;
+        // field name -> the values the rule accepts, sorted by field name so the order of with() does not matter
+        private final Map<String, List<String>> conditions = new TreeMap<>();
+        private String result;
+
+        private Rule(String state) {
+            this.state = state;
+        }
+
+        public Rule with(String field, String... values) {
+            conditions.put(field, Arrays.asList(values));
+            return this;
+        }
+
+        public Rule then(String result) {
+            this.result = result;
+            return this;
+        }
+
+        private List<List<String>> keys() {
+            List<List<String>> keys = Collections.singletonList(Collections.singletonList(state));
+            for (List<String> values : conditions.values()) {
+                List<List<String>> expanded = new ArrayList<>();
+                for (List<String> key : keys) {
+                    for (String value : values) {
+                        List<String> next = new ArrayList<>(key);
+                        next.add(value);
+                        expanded.add(next);
+                    }
+                }
+                keys = expanded;
+            }
+            return keys;
+        }
+    }
+}
@@ -10,7 +10,6 @@ import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
 import uk.gov.hmcts.reform.workallocation.exception.CaseTransformException;
-import uk.gov.hmcts.reform.workallocation.services.CcdConnectorService;
 
 import java.time.LocalDateTime;
 import java.util.Map;
@@ -31,30 +30,13 @@ public class Task {
     private String caseTypeId;
     private LocalDateTime lastModifiedDate;
 
-    public static Task fromCcdCase(Map<String, Object> caseData, String caseTypeId, String evidenceFlow)
+    public static Task fromCcdDivorceEvidenceCase(Map<String, Object> caseData, String caseTypeId)
             throws CaseTransformException {
-        if (CcdConnectorService.CASE_TYPE_ID_DIVORCE.equals(caseTypeId)
-                && evidenceFlow != null) {
-            caseData.put("state", "SupplementaryEvidence");
-            return fromCcdDivorceCase(caseData, caseTypeId);
-        }
-        if ((CcdConnectorService.CASE_TYPE_ID_DIVORCE.equals(caseTypeId)
-                || CcdConnectorService.CASE_TYPE_ID_DIVORCE_EXCEPTION.equals(caseTypeId)) && evidenceFlow == null) {
-            return fromCcdDivorceCase(caseData, caseTypeId);
-        }
-        if (CcdConnectorService.PROBATE_CASE_TYPE_ID_GOP.equals(caseTypeId)
-                || CcdConnectorService.PROBATE_CASE_TYPE_ID_CAVEAT.equals(caseTypeId)
-                || CcdConnectorService.PROBATE_CASE_TYPE_ID_BSP_EXCEPTION.equals(caseTypeId)) {
-            return fromCcdProbateCase(caseData, caseTypeId);
-        }
-        if (CcdConnectorService.FR_CASE_TYPE.equals(caseTypeId)
-            || CcdConnectorService.FR_EXCEPTION_CASE_TYPE.equals(caseTypeId)) {
-            return fromCcdFinancialRemedyCase(caseData, caseTypeId);
-        }
-        throw new CaseTransformException("Unknown case type: " + caseTypeId);
+        caseData.put("state", "SupplementaryEvidence");
+        return fromCcdDivorceCase(caseData, caseTypeId);
     }
 
-    private static Task fromCcdDivorceCase(Map<String, Object> caseData, String caseTypeId)
+    public static Task fromCcdDivorceCase(Map<String, Object> caseData, String caseTypeId)
             throws CaseTransformException {
         try {
             LocalDateTime lastModifiedDate = LocalDateTime.parse(caseData.get("last_modified").toString());
@@ -70,7 +52,7 @@ public class Task {
         }
     }
 
-    private static Task fromCcdProbateCase(Map<String, Object> caseData, String caseTypeId)
+    public static Task fromCcdProbateCase(Map<String, Object> caseData, String caseTypeId)
             throws CaseTransformException {
         try {
             LocalDateTime lastModifiedDate = LocalDateTime.parse(caseData.get("last_modified").toString());
@@ -86,7 +68,7 @@ public class Task {
         }
     }
 
-    private static Task fromCcdFinancialRemedyCase(Map<String, Object> caseData, String caseTypeId)
+    public static Task fromCcdFinancialRemedyCase(Map<String, Object> caseData, String caseTypeId)
         throws CaseTransformException {
         try {
             LocalDateTime lastModifiedDate = LocalDateTime.parse(caseData.get("last_modified").toString());
@@ -104,88 +86,8 @@ public class Task {
 
     @SuppressWarnings("unchecked")
     private static String getProbateState(Map<String, Object> caseData) {
-        String state = (String) caseData.get("state");
-        Map<String, Object> caseProperties = (Map<String, Object>) caseData.get("case_data");
-
-        if ("CaseCreated".equals(state)) {
-            return "CaseCreated";
-        }
-        if ("CasePrinted".equals(state) && "Personal".equals(caseProperties.get("applicationType"))
-            && "gop".equals(caseProperties.get("caseType")) && "No".equals(caseProperties.get("evidenceHandled"))
-            && "ctsc".equals(caseProperties.get("registryLocation"))) {
-            return "AwaitingDocumentationPersonalEvidenceNotHandled";
-        }
-        if ("CasePrinted".equals(state) && "Solicitor".equals(caseProperties.get("applicationType"))
-            && "gop".equals(caseProperties.get("caseType")) && "No".equals(caseProperties.get("evidenceHandled"))
-            && "ctsc".equals(caseProperties.get("registryLocation"))) {
-            return "AwaitingDocumentationSolicitorEvidenceNotHandled";
-        }
-        if ("BOReadyForExamination".equals(state) && "Personal".equals(caseProperties.get("applicationType"))
-            && "gop".equals(caseProperties.get("caseType")) && "No".equals(caseProperties.get("evidenceHandled"))
-            && "ctsc".equals(caseProperties.get("registryLocation"))) {
-            return "ReadyForExaminationPersonal";
-        }
-        if ("BOReadyForExamination".equals(state) && "Solicitor".equals(caseProperties.get("applicationType"))
-            && "gop".equals(caseProperties.get("caseType")) && "No".equals(caseProperties.get("evidenceHandled"))
-            && "ctsc".equals(caseProperties.get("registryLocation"))) {
-            return "ReadyForExaminationSolicitor";
-        }
-        if ("BOCaseStopped".equals(state) && "Personal".equals(caseProperties.get("applicationType"))
-                && "gop".equals(caseProperties.get("caseType")) && "No".equals(caseProperties.get("evidenceHandled"))) {
-            return "CaseStoppedPersonalEvidenceNotHandled";
-        }
-        if ("BOCaseStopped".equals(state) && "Solicitor".equals(caseProperties.get("applicationType"))
-                && "gop".equals(caseProperties.get("caseType")) && "No".equals(caseProperties.get("evidenceHandled"))) {
-            return "CaseStoppedSolicitorsEvidenceNotHandled";
-        }
-        if ("BOCaseStopped".equals(state) && "Personal".equals(caseProperties.get("applicationType"))
-                && "intestacy".equals(caseProperties.get("caseType"))
-                && "No".equals(caseProperties.get("evidenceHandled"))) {
-            return "CaseStoppedPersonalIntestacyEvidenceNotHandled";
-        }
-        if ("BOCaseStopped".equals(state) && "Solicitor".equals(caseProperties.get("applicationType"))
-                && "intestacy".equals(caseProperties.get("caseType"))
-                && "No".equals(caseProperties.get("evidenceHandled"))) {
-            return "CaseStoppedSolicitorsIntestacyEvidenceNotHandled";
-        }
-        if ("BOCaseStopped".equals(state) && "Personal".equals(caseProperties.get("applicationType"))
-            && "gop".equals(caseProperties.get("caseType")) && "Yes".equals(caseProperties.get("evidenceHandled"))) {
-            return "CaseStoppedPersonalEvidenceHandled";
-        }
-        if ("BOCaseStopped".equals(state) && "Solicitor".equals(caseProperties.get("applicationType"))
-            && "gop".equals(caseProperties.get("caseType")) && "Yes".equals(caseProperties.get("evidenceHandled"))) {
-            return "CaseStoppedSolicitorsEvidenceHandled";
-        }
-        if ("BOCaseStopped".equals(state) && "Personal".equals(caseProperties.get("applicationType"))
-            && "intestacy".equals(caseProperties.get("caseType"))
-            && "Yes".equals(caseProperties.get("evidenceHandled"))) {
-            return "CaseStoppedPersonalIntestacyEvidenceHandled";
-        }
-        if ("BOCaseStopped".equals(state) && "Solicitor".equals(caseProperties.get("applicationType"))
-            && "intestacy".equals(caseProperties.get("caseType"))
-            && "Yes".equals(caseProperties.get("evidenceHandled"))) {
-            return "CaseStoppedSolicitorsIntestacyEvidenceHandled";
-        }
-        if ("CaveatRaised".equals(state) && "Personal".equals(caseProperties.get("applicationType"))) {
-            return "CaveatPersonal";
-        }
-        if ("CaveatRaised".equals(state) && "Solicitor".equals(caseProperties.get("applicationType"))) {
-            return "CaveatSolicitor";
-        }
-        if ("ScannedRecordReceived".equals(state) && "No".equals(caseProperties.get("containsPayments"))
-                && "NEW_APPLICATION".equals(caseProperties.get("journeyClassification"))) {
-            return "BulkScanNewApplicationsReceivedWithoutPayments";
-        }
-        if ("ScannedRecordReceived".equals(state) && "Yes".equals(caseProperties.get("containsPayments"))
-                && "NEW_APPLICATION".equals(caseProperties.get("journeyClassification"))) {
-            return "BulkScanNewApplicationsReceivedWithPayments";
-        }
-        if ("ScannedRecordReceived".equals(state) && "No".equals(caseProperties.get("containsPayments"))
-                && ("SUPPLEMENTARY_EVIDENCE_WITH_OCR".equals(caseProperties.get("journeyClassification")))
-                || ("SUPPLEMENTARY_EVIDENCE".equals(caseProperties.get("journeyClassification")))) {
-            return "BulkScanSupplementaryEvidenceWithoutPayments";
-        }
-        return state;
+        return ProbateStateClassifier.PROBATE.classify((String) caseData.get("state"),
+            (Map<String, Object>) caseData.get("case_data"));
     }
 
     @SuppressWarnings("unchecked")
@@ -0,0 +1,29 @@
+package uk.gov.hmcts.reform.workallocation.queue;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * The outcome of sending one batch of messages to the service bus. The positions are the indexes of the batch's
+ * items in the list that was sent, message ids do not have to be unique within that list.
+ */
+@Value
+public class BatchSendResult {
+
+    List<String> messageIds;
+    List<Integer> positions;
+    Throwable error;
+
+    public static BatchSendResult success(List<String> messageIds, List<Integer> positions) {
+        return new BatchSendResult(messageIds, positions, null);
+    }
+
+    public static BatchSendResult failure(List<String> messageIds, List<Integer> positions, Throwable error) {
+        return new BatchSendResult(messageIds, positions, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,83 @@
+package uk.gov.hmcts.reform.workallocation.queue;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the receiver of the task queue registered for as long as the application runs, instead of
+ * opening it only for the receive window of a poll. The receiver is registered again after
+ * {@code retrySeconds} when the service bus can not be reached at start up.
+ */
+@Slf4j
+public class ContinuousQueueConsumer implements SmartLifecycle {
+
+    private final BaseQueueConsumer queueConsumer;
+    private final long retrySeconds;
+
+    private ScheduledExecutorService scheduler;
+    private Supplier<CompletableFuture<Void>> closeReceiver;
+    private volatile boolean running;
+
+    public ContinuousQueueConsumer(BaseQueueConsumer queueConsumer, long retrySeconds) {
+        this.queueConsumer = queueConsumer;
+        this.retrySeconds = retrySeconds;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.execute(this::register);
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (closeReceiver != null) {
+            try {
+                closeReceiver.get().get(BaseQueueConsumer.CLIENT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                log.info("continuous queue consumer stopped");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("failed to close the queue receiver", e);
+            }
+            closeReceiver = null;
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private synchronized void register() {
+        if (!running || closeReceiver != null) {
+            return;
+        }
+        try {
+            closeReceiver = queueConsumer.registerReceiver(new DelayedExecutor(scheduler));
+            log.info("continuous queue consumer started");
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            log.error("failed to register the queue receiver, retrying in {} seconds", retrySeconds, e);
+            scheduler.schedule(this::register, retrySeconds, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package uk.gov.hmcts.reform.workallocation.queue;
 
+import com.microsoft.azure.servicebus.IMessageReceiver;
 import com.microsoft.azure.servicebus.IQueueClient;
 
 public interface CtscQueueSupplier {
@@ -7,4 +8,9 @@ public interface CtscQueueSupplier {
     IQueueClient getQueue();
 
     IQueueClient getDeadQueue();
+
+    /**
+     * A receiver of the queue for callers that receive the messages in batches instead of through a handler.
+     */
+    IMessageReceiver getReceiver();
 }
@@ -1,19 +1,32 @@
 package uk.gov.hmcts.reform.workallocation.queue;
 
+import com.microsoft.azure.servicebus.ClientFactory;
+import com.microsoft.azure.servicebus.IMessageReceiver;
 import com.microsoft.azure.servicebus.IQueueClient;
 import com.microsoft.azure.servicebus.QueueClient;
 import com.microsoft.azure.servicebus.ReceiveMode;
 import com.microsoft.azure.servicebus.primitives.ConnectionStringBuilder;
+import com.microsoft.azure.servicebus.primitives.MessagingFactory;
+import com.microsoft.azure.servicebus.primitives.ServiceBusException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
 import uk.gov.hmcts.reform.workallocation.exception.ConnectionException;
 
+/**
+ * Creates the queue clients on one shared, long lived AMQP connection. The clients are cheap links on that
+ * connection, the callers still close them when they are done. A broken connection is replaced on the next
+ * request and the connection is closed when the application shuts down.
+ */
 @Slf4j
-public class QueueClientSupplier implements CtscQueueSupplier {
+public class QueueClientSupplier implements CtscQueueSupplier, DisposableBean {
 
     private final String connectionString;
     private final String entityPath;
 
+    private volatile MessagingFactory messagingFactory;
+    private volatile Exception lastConnectionError;
+
     public QueueClientSupplier(@Value("${servicebus.queue.connectionString}") String connectionString,
                                @Value("${servicebus.queue.entityPath}") String entityPath) {
         this.connectionString = connectionString;
@@ -30,14 +43,85 @@ public class QueueClientSupplier implements CtscQueueSupplier {
         return getServiceBusQueue(entityPath + "/$deadletterqueue");
     }
 
+    @Override
+    public IMessageReceiver getReceiver() {
+        return createClient(factory ->
+            ClientFactory.createMessageReceiverFromEntityPath(factory, entityPath, ReceiveMode.PEEKLOCK));
+    }
+
+    public boolean isHealthy() {
+        return lastConnectionError == null;
+    }
+
+    public Exception getLastConnectionError() {
+        return lastConnectionError;
+    }
+
+    @Override
+    public void destroy() throws ServiceBusException {
+        MessagingFactory factory;
+        synchronized (this) {
+            factory = messagingFactory;
+            messagingFactory = null;
+        }
+        if (factory != null) {
+            log.info("Closing the service bus connection");
+            factory.close();
+        }
+    }
+
     private IQueueClient getServiceBusQueue(String entityPath) {
+        return createClient(factory -> new QueueClient(factory, entityPath, ReceiveMode.PEEKLOCK));
+    }
+
+    private <C> C createClient(ClientCreator<C> creator) {
+        MessagingFactory factory = getMessagingFactory();
+        try {
+            return creator.create(factory);
+        } catch (Exception exception) {
+            log.warn("Unable to create queue client on the shared connection, reconnecting", exception);
+        }
+        reconnect(factory);
         try {
-            return new QueueClient(
-                new ConnectionStringBuilder(connectionString, entityPath),
-                ReceiveMode.PEEKLOCK
-            );
+            C client = creator.create(getMessagingFactory());
+            lastConnectionError = null;
+            return client;
         } catch (Exception exception) {
+            lastConnectionError = exception;
             throw new ConnectionException("Unable to connect to Azure service bus", exception);
         }
     }
+
+    private MessagingFactory getMessagingFactory() {
+        MessagingFactory factory = messagingFactory;
+        if (factory != null) {
+            return factory;
+        }
+        synchronized (this) {
+            if (messagingFactory == null) {
+                try {
+                    log.info("Opening the service bus connection");
+                    messagingFactory = MessagingFactory.createFromConnectionStringBuilder(
+                        new ConnectionStringBuilder(connectionString, entityPath));
+                    lastConnectionError = null;
+                } catch (Exception exception) {
+                    lastConnectionError = exception;
+                    throw new ConnectionException("Unable to connect to Azure service bus", exception);
+                }
+            }
+            return messagingFactory;
+        }
+    }
+
+    private synchronized void reconnect(MessagingFactory brokenFactory) {
+        if (messagingFactory == brokenFactory) {
+            messagingFactory = null;
+            brokenFactory.closeAsync();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ClientCreator<C> {
+        C create(MessagingFactory factory) throws Exception;
+    }
 }
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.microsoft.azure.servicebus.ExceptionPhase;
 import com.microsoft.azure.servicebus.IMessage;
 import com.microsoft.azure.servicebus.IMessageHandler;
+import com.microsoft.azure.servicebus.IMessageReceiver;
 import com.microsoft.azure.servicebus.IQueueClient;
 import com.microsoft.azure.servicebus.MessageHandlerOptions;
 import com.microsoft.azure.servicebus.primitives.ServiceBusException;
@@ -11,18 +12,37 @@ import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import uk.gov.hmcts.reform.workallocation.email.DigestCollector;
 import uk.gov.hmcts.reform.workallocation.email.IEmailSendingService;
+import uk.gov.hmcts.reform.workallocation.email.SmtpPermits;
 import uk.gov.hmcts.reform.workallocation.model.Task;
 
+import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
 
 import static java.time.LocalDateTime.now;
 
 @Slf4j
 public class QueueConsumer<T> extends BaseQueueConsumer {
 
+    private static final String CONTENT_TYPE = "application/json;charset=UTF-8";
+    private static final Duration RECEIVE_WAIT = Duration.ofSeconds(5);
+    // well below the lock duration of the queue
+    private static final long LOCK_RENEW_SECONDS = 20;
+
     @Autowired
     @Setter
     private ObjectMapper objectMapper;
@@ -35,45 +55,99 @@ public class QueueConsumer<T> extends BaseQueueConsumer {
     @Setter
     private IEmailSendingService emailSendingService;
 
+    @Autowired(required = false)
+    @Setter
+    private DigestCollector digestCollector;
+
+    @Autowired
+    @Setter
+    private SmtpPermits smtpPermits;
+
     @Value("${ccd.deeplinkBaseUrl}")
     @Setter
     private String deeplinkBaseUrl;
 
+    @Value("${servicebus.queue.max_concurrent_calls:1}")
+    @Setter
+    private int maxConcurrentCalls = 1;
+
+    @Value("${email.digest.max_locked_messages:500}")
+    @Setter
+    private int maxLockedDigestMessages = 500;
+
     private final Class<T> clazz;
 
+    private ExecutorService workerPool;
+
     public QueueConsumer(Class<T> clazz) {
         this.clazz = clazz;
     }
 
+    /**
+     * The message handlers run on their own pool, so a slow SMTP server never holds up the
+     * timer thread of the DelayedExecutor that closes the receiver.
+     */
+    private synchronized ExecutorService getWorkerPool() {
+        if (workerPool == null) {
+            workerPool = Executors.newFixedThreadPool(maxConcurrentCalls);
+        }
+        return workerPool;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (workerPool != null) {
+            workerPool.shutdown();
+        }
+    }
+
+    private void sendEmail(Task task) throws Exception {
+        // if the SMTP server is saturated we give the message back to the queue instead of piling up
+        smtpPermits.send("task: " + task.getId(), () -> emailSendingService.sendEmail(task, deeplinkBaseUrl));
+    }
+
+    /**
+     * Reads the message, returns null when it does not hold a {@code T}.
+     */
+    private T readMessage(IMessage message) throws IOException {
+        if (message.getLabel() == null
+            || message.getContentType() == null
+            || !message.getLabel().contentEquals(clazz.getSimpleName())
+            || !message.getContentType().contentEquals(CONTENT_TYPE)) {
+            return null;
+        }
+        byte[] body = message.getMessageBody().getBinaryData().get(0);
+        T messageObject = objectMapper.readValue(body, clazz);
+        log.info("Received message: " + messageObject);
+        return messageObject;
+    }
 
     @Override
     public Supplier<CompletableFuture<Void>> registerReceiver(DelayedExecutor executorService)
         throws ServiceBusException, InterruptedException {
+        if (digestCollector != null) {
+            return registerDigestReceiver(executorService);
+        }
         IQueueClient receiver = queueClientSupplier.getQueue();
+        ExecutorService handlerPool = getWorkerPool();
 
         receiver
             .registerMessageHandler(
                 new IMessageHandler() {
                     public CompletableFuture<Void> onMessageAsync(IMessage message) {
                         setLastMessageTime(now());
-                        if (message.getLabel() != null
-                            && message.getContentType() != null
-                            && message.getLabel().contentEquals(clazz.getSimpleName())
-                            && message.getContentType().contentEquals("application/json;charset=UTF-8")) {
-
-                            T messageObject = null;
-                            try {
-                                byte[] body = message.getMessageBody().getBinaryData().get(0);
-                                messageObject = objectMapper.readValue(body, clazz);
-                                log.info("Received message: " + messageObject);
+                        try {
+                            T messageObject = readMessage(message);
+                            if (messageObject != null) {
                                 // TODO: make email sending generic
-                                emailSendingService.sendEmail((Task) messageObject, deeplinkBaseUrl);
-                            } catch (Exception e) {
-                                log.error("failed to parse/send message: ", e);
-                                CompletableFuture<Void> failure = new CompletableFuture<>();
-                                failure.cancel(true);
-                                return failure;
+                                sendEmail((Task) messageObject);
                             }
+                        } catch (Exception e) {
+                            log.error("failed to parse/send message: ", e);
+                            // a failed future gives the message back to the queue
+                            CompletableFuture<Void> failure = new CompletableFuture<>();
+                            failure.cancel(true);
+                            return failure;
                         }
                         return CompletableFuture.completedFuture(null);
                     }
@@ -82,9 +156,137 @@ public class QueueConsumer<T> extends BaseQueueConsumer {
                         log.error(exceptionPhase.name(), throwable.getMessage());
                     }
                 },
-                new MessageHandlerOptions(1, true, Duration.ofMinutes(2)),
-                executorService.getExecutorService());
+                new MessageHandlerOptions(maxConcurrentCalls, true, Duration.ofMinutes(2)),
+                handlerPool);
 
         return receiver::closeAsync;
     }
+
+    /**
+     * In digest mode the messages are received in batches instead of through a message handler, whose
+     * concurrent calls would cap a digest at {@code max_concurrent_calls} tasks. Every message stays locked, with
+     * its lock renewed, until its digest was sent and is then completed, or abandoned when the digest failed.
+     */
+    private Supplier<CompletableFuture<Void>> registerDigestReceiver(DelayedExecutor executorService) {
+        DigestReceiver digestReceiver = new DigestReceiver(queueClientSupplier.getReceiver());
+        getWorkerPool().execute(digestReceiver::receive);
+        ScheduledFuture<?> renewal = executorService.getExecutorService().scheduleWithFixedDelay(
+            digestReceiver::renewLocks, LOCK_RENEW_SECONDS, LOCK_RENEW_SECONDS, TimeUnit.SECONDS);
+
+        // pending digests are sent before the receiver closes, their messages can only be completed while it is open
+        return () -> {
+            digestReceiver.stop();
+            return digestReceiver.stopped
+                .thenCompose(aVoid -> digestCollector.flushAll())
+                .thenCompose(aVoid -> digestReceiver.settled())
+                .thenCompose(aVoid -> {
+                    renewal.cancel(false);
+                    return digestReceiver.receiver.closeAsync();
+                });
+        };
+    }
+
+    private class DigestReceiver {
+
+        private final IMessageReceiver receiver;
+        private final Map<UUID, IMessage> locked = new ConcurrentHashMap<>();
+        private final Map<UUID, CompletableFuture<Void>> settling = new ConcurrentHashMap<>();
+        private final CompletableFuture<Void> stopped = new CompletableFuture<>();
+        private volatile boolean receiving = true;
+
+        DigestReceiver(IMessageReceiver receiver) {
+            this.receiver = receiver;
+        }
+
+        void receive() {
+            try {
+                receiveUntilStopped();
+            } finally {
+                stopped.complete(null);
+            }
+        }
+
+        private void receiveUntilStopped() {
+            while (receiving) {
+                // the receiver pauses while too many messages wait for their digest
+                int wanted = maxLockedDigestMessages - locked.size();
+                try {
+                    if (wanted <= 0) {
+                        Thread.sleep(RECEIVE_WAIT.toMillis());
+                        continue;
+                    }
+                    Collection<IMessage> messages = receiver.receiveBatch(wanted, RECEIVE_WAIT);
+                    if (messages != null) {
+                        messages.forEach(this::handle);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    log.error("failed to receive messages: ", e);
+                    try {
+                        Thread.sleep(RECEIVE_WAIT.toMillis());
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        void handle(IMessage message) {
+            setLastMessageTime(now());
+            UUID lockToken = message.getLockToken();
+            T messageObject;
+            try {
+                messageObject = readMessage(message);
+            } catch (Exception e) {
+                log.error("failed to parse message: ", e);
+                receiver.abandonAsync(lockToken);
+                return;
+            }
+            if (messageObject == null) {
+                receiver.completeAsync(lockToken);
+                return;
+            }
+            locked.put(lockToken, message);
+            CompletableFuture<Void> settled = digestCollector.add((Task) messageObject)
+                .handle((aVoid, throwable) -> {
+                    if (throwable != null) {
+                        log.error("failed to send digest: ", throwable);
+                        return receiver.abandonAsync(lockToken);
+                    }
+                    return receiver.completeAsync(lockToken);
+                })
+                .thenCompose(Function.identity())
+                .whenComplete((aVoid, throwable) -> locked.remove(lockToken));
+            settling.put(lockToken, settled);
+            settled.whenComplete((aVoid, throwable) -> settling.remove(lockToken));
+        }
+
+        void renewLocks() {
+            if (!locked.isEmpty()) {
+                receiver.renewMessageLockBatchAsync(new ArrayList<>(locked.values()))
+                    .whenComplete((lockedUntil, throwable) -> {
+                        if (throwable != null) {
+                            log.error("failed to renew the locks of the messages waiting for their digest: ",
+                                throwable);
+                        }
+                    });
+            }
+        }
+
+        void stop() {
+            receiving = false;
+        }
+
+        /**
+         * Completes when the messages of the sent digests were completed or abandoned.
+         */
+        CompletableFuture<Void> settled() {
+            return CompletableFuture.allOf(settling.values().stream()
+                .map(future -> future.exceptionally(throwable -> null))
+                .toArray(CompletableFuture[]::new));
+        }
+    }
 }
@@ -12,43 +12,60 @@ import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class QueueProducer<T> {
 
+    // rough size of the system and user properties of a message in a batch
+    private static final int MESSAGE_OVERHEAD_BYTES = 256;
+
     private final ObjectMapper objectMapper;
 
     @Autowired
     private final CtscQueueSupplier queueClientSupplier;
 
     private int messageTtl;
+    private final int batchMaxMessages;
+    private final int batchMaxBytes;
 
     public QueueProducer(CtscQueueSupplier queueClientSupplier, ObjectMapper objectMapper,
-                         @Value("${servicebus.queue.messageTTLInDays}") int messageTtl) {
+                         @Value("${servicebus.queue.messageTTLInDays}") int messageTtl,
+                         @Value("${servicebus.queue.batch.max_messages}") int batchMaxMessages,
+                         @Value("${servicebus.queue.batch.max_bytes}") int batchMaxBytes) {
         this.queueClientSupplier = queueClientSupplier;
         this.objectMapper = objectMapper;
         this.messageTtl = messageTtl;
+        this.batchMaxMessages = batchMaxMessages;
+        this.batchMaxBytes = batchMaxBytes;
     }
 
-    public void placeItemsInQueue(List<T> items, Function<T, String> extractId) {
+    /**
+     * Sends the items in size bounded batches. The batches are sent concurrently on the same client.
+     *
+     * @return the result of every batch, failed serialisations are reported as failed batches too
+     */
+    public List<BatchSendResult> placeItemsInQueue(List<T> items, Function<T, String> extractId) {
         if (items.isEmpty()) {
-            return;
+            return Collections.emptyList();
+        }
+        List<BatchSendResult> results = new ArrayList<>();
+        List<Batch> batches = createBatches(items, extractId, results);
+        if (batches.isEmpty()) {
+            return results;
         }
         IQueueClient sendClient = queueClientSupplier.getQueue();
         try {
-            items.forEach(item -> {
-                String messageId = extractId.apply(item);
-                try {
-                    Message message = createQueueMessage(item, messageId);
-                    sendClient.send(message);
-                    log.info("items placed on the queue successfully");
-                } catch (Exception e) {
-                    log.error(String.format("Could not send message to ServiceBus. Message ID: %s", messageId), e);
-                }
-            });
+            List<CompletableFuture<BatchSendResult>> futures = batches.stream()
+                .map(batch -> sendBatch(sendClient, batch))
+                .collect(Collectors.toList());
+            futures.forEach(future -> results.add(future.join()));
         } finally {
             try {
                 if (sendClient != null) {
@@ -58,6 +75,60 @@ public class QueueProducer<T> {
                 log.error("Failed to close the queue client", exc);
             }
         }
+        return results;
+    }
+
+    private CompletableFuture<BatchSendResult> sendBatch(IQueueClient sendClient, Batch batch) {
+        List<String> messageIds = batch.messages.stream().map(Message::getMessageId).collect(Collectors.toList());
+        CompletableFuture<Void> sent;
+        try {
+            sent = sendClient.sendBatchAsync(batch.messages);
+        } catch (Exception e) {
+            sent = new CompletableFuture<>();
+            sent.completeExceptionally(e);
+        }
+        return sent.handle((aVoid, throwable) -> {
+            if (throwable != null) {
+                log.error(String.format("Could not send batch to ServiceBus. Message IDs: %s", messageIds),
+                    throwable);
+                return BatchSendResult.failure(messageIds, batch.positions, throwable);
+            }
+            log.info("{} items placed on the queue successfully", messageIds.size());
+            return BatchSendResult.success(messageIds, batch.positions);
+        });
+    }
+
+    private List<Batch> createBatches(List<T> items, Function<T, String> extractId, List<BatchSendResult> results) {
+        List<Batch> batches = new ArrayList<>();
+        Batch batch = new Batch();
+        int batchBytes = 0;
+        for (int position = 0; position < items.size(); position++) {
+            T item = items.get(position);
+            String messageId = extractId.apply(item);
+            Message message;
+            try {
+                message = createQueueMessage(item, messageId);
+            } catch (Exception e) {
+                log.error(String.format("Could not create message for ServiceBus. Message ID: %s", messageId), e);
+                results.add(BatchSendResult.failure(Collections.singletonList(messageId),
+                    Collections.singletonList(position), e));
+                continue;
+            }
+            int messageBytes = message.getMessageBody().getBinaryData().get(0).length + MESSAGE_OVERHEAD_BYTES;
+            int size = batch.messages.size();
+            if (size > 0 && (size >= batchMaxMessages || batchBytes + messageBytes > batchMaxBytes)) {
+                batches.add(batch);
+                batch = new Batch();
+                batchBytes = 0;
+            }
+            batch.messages.add(message);
+            batch.positions.add(position);
+            batchBytes += messageBytes;
+        }
+        if (!batch.messages.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
     }
 
     private Message createQueueMessage(T task, String messageId) throws JsonProcessingException {
@@ -73,4 +144,9 @@ public class QueueProducer<T> {
 
         return message;
     }
+
+    private static class Batch {
+        private final List<Message> messages = new ArrayList<>();
+        private final List<Integer> positions = new ArrayList<>();
+    }
 }
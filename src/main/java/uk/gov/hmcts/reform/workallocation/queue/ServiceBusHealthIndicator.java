@@ -0,0 +1,21 @@
+package uk.gov.hmcts.reform.workallocation.queue;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+public class ServiceBusHealthIndicator implements HealthIndicator {
+
+    private final QueueClientSupplier queueClientSupplier;
+
+    public ServiceBusHealthIndicator(QueueClientSupplier queueClientSupplier) {
+        this.queueClientSupplier = queueClientSupplier;
+    }
+
+    @Override
+    public Health health() {
+        if (queueClientSupplier.isHealthy()) {
+            return Health.up().build();
+        }
+        return Health.down(queueClientSupplier.getLastConnectionError()).build();
+    }
+}
@@ -0,0 +1,31 @@
+package uk.gov.hmcts.reform.workallocation.services;
+
+import lombok.Builder;
+import lombok.Value;
+import uk.gov.hmcts.reform.workallocation.exception.CaseTransformException;
+import uk.gov.hmcts.reform.workallocation.model.Task;
+
+import java.util.Map;
+
+/**
+ * Describes one CCD search the service polls: the case type it searches, the query it sends and how a found
+ * case is turned into a task.
+ */
+@Value
+@Builder
+public class CaseType {
+
+    String name;
+    String caseTypeId;
+    String queryName;
+    CaseTransformer transformer;
+
+    public String getMetricName() {
+        return "num_of_" + name + "_cases";
+    }
+
+    @FunctionalInterface
+    public interface CaseTransformer {
+        Task transform(Map<String, Object> ccdCase, String caseTypeId) throws CaseTransformException;
+    }
+}
@@ -0,0 +1,43 @@
+package uk.gov.hmcts.reform.workallocation.services;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * The case types the service polls, in the order they are searched. Disabled case types are left out.
+ */
+@Slf4j
+public class CaseTypeRegistry {
+
+    private final Map<String, CaseType> caseTypes = new LinkedHashMap<>();
+
+    public CaseTypeRegistry(List<CaseType> caseTypes, Predicate<String> enabled) {
+        for (CaseType caseType : caseTypes) {
+            if (!enabled.test(caseType.getName())) {
+                log.info("Polling {} is disabled", caseType.getName());
+                continue;
+            }
+            if (this.caseTypes.putIfAbsent(caseType.getName(), caseType) != null) {
+                throw new IllegalArgumentException("Case type " + caseType.getName() + " is registered twice");
+            }
+        }
+    }
+
+    public List<CaseType> getEnabledCaseTypes() {
+        return Collections.unmodifiableList(new ArrayList<>(caseTypes.values()));
+    }
+
+    public CaseType get(String name) {
+        CaseType caseType = caseTypes.get(name);
+        if (caseType == null) {
+            throw new IllegalArgumentException("There is no enabled case type named " + name);
+        }
+        return caseType;
+    }
+}
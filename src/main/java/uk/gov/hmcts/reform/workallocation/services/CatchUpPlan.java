@@ -0,0 +1,72 @@
+package uk.gov.hmcts.reform.workallocation.services;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Hands out consecutive windows of a time range. The size of the next window follows the number of cases
+ * found in the previous one: it is halved when a search needed more than one page and doubled when the
+ * results were sparse.
+ */
+@Slf4j
+public class CatchUpPlan {
+
+    private static final int SPARSE_DIVISOR = 4;
+
+    private final LocalDateTime end;
+    private final Duration minWindow;
+    private final Duration maxWindow;
+
+    private LocalDateTime cursor;
+    private Duration window;
+
+    CatchUpPlan(LocalDateTime start, LocalDateTime end, Duration initialWindow, Duration minWindow,
+                Duration maxWindow) {
+        this.cursor = start;
+        this.end = end;
+        this.window = initialWindow;
+        this.minWindow = minWindow;
+        this.maxWindow = maxWindow;
+    }
+
+    public boolean hasNext() {
+        return cursor.isBefore(end);
+    }
+
+    public Window next() {
+        LocalDateTime windowEnd = cursor.plus(window);
+        if (windowEnd.isAfter(end)) {
+            windowEnd = end;
+        }
+        Window next = new Window(cursor, windowEnd);
+        cursor = windowEnd;
+        return next;
+    }
+
+    /**
+     * Adjusts the size of the next window to the number of cases found in the last one, counted over all the
+     * pages of its search. More cases than fit on one page means the search needed more than one page.
+     */
+    public void feedback(int casesInWindow, int pageSize) {
+        Duration previous = window;
+        if (casesInWindow > pageSize) {
+            Duration half = window.dividedBy(2);
+            window = half.compareTo(minWindow) < 0 ? minWindow : half;
+        } else if (casesInWindow < pageSize / SPARSE_DIVISOR) {
+            Duration twice = window.multipliedBy(2);
+            window = twice.compareTo(maxWindow) > 0 ? maxWindow : twice;
+        }
+        if (!window.equals(previous)) {
+            log.info("Catch-up window changed from {} to {}", previous, window);
+        }
+    }
+
+    @Value
+    public static class Window {
+        LocalDateTime from;
+        LocalDateTime to;
+    }
+}
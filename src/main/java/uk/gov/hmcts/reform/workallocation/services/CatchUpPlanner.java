@@ -0,0 +1,32 @@
+package uk.gov.hmcts.reform.workallocation.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Splits the time range of a poll into windows, so a catch-up after an outage is a series of small searches.
+ */
+@Service
+public class CatchUpPlanner {
+
+    private final Duration initialWindow;
+    private final Duration minWindow;
+    private final Duration maxWindow;
+
+    @Autowired
+    public CatchUpPlanner(@Value("${ccd.catch_up.initial_window_minutes}") long initialWindowMinutes,
+                          @Value("${ccd.catch_up.min_window_minutes}") long minWindowMinutes,
+                          @Value("${ccd.catch_up.max_window_minutes}") long maxWindowMinutes) {
+        this.initialWindow = Duration.ofMinutes(initialWindowMinutes);
+        this.minWindow = Duration.ofMinutes(minWindowMinutes);
+        this.maxWindow = Duration.ofMinutes(maxWindowMinutes);
+    }
+
+    public CatchUpPlan plan(LocalDateTime from, LocalDateTime to) {
+        return new CatchUpPlan(from, to, initialWindow, minWindow, maxWindow);
+    }
+}
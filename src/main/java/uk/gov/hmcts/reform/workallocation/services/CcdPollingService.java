@@ -7,8 +7,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Isolation;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 import uk.gov.hmcts.reform.workallocation.exception.CcdConnectionException;
 import uk.gov.hmcts.reform.workallocation.idam.IdamConnectionException;
 import uk.gov.hmcts.reform.workallocation.idam.IdamService;
@@ -16,16 +17,21 @@ import uk.gov.hmcts.reform.workallocation.model.Task;
 import uk.gov.hmcts.reform.workallocation.queue.DeadQueueConsumer;
 import uk.gov.hmcts.reform.workallocation.queue.DelayedExecutor;
 import uk.gov.hmcts.reform.workallocation.queue.QueueConsumer;
-import uk.gov.hmcts.reform.workallocation.queue.QueueProducer;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class CcdPollingService {
@@ -35,39 +41,81 @@ public class CcdPollingService {
     private final TelemetryClient telemetryClient;
     private final IdamService idamService;
     private final CcdConnectorService ccdConnectorService;
+    private final CaseTypeRegistry caseTypeRegistry;
+    private final CcdSearchExecutor ccdSearchExecutor;
+    private final CatchUpPlanner catchUpPlanner;
     private final LastRunTimeService lastRunTimeService;
-    private final QueueProducer<Task> queueProducer;
+    private final PollLeaseService pollLeaseService;
+    private final PollMembershipService pollMembershipService;
+    private final EnqueuedCaseService enqueuedCaseService;
+    private final TaskOutboxService taskOutboxService;
+    private final TransactionTemplate writeTransaction;
     private final QueueConsumer<Task> queueConsumer;
     private final DeadQueueConsumer deadQueueConsumer;
 
     private final int lastModifiedTimeMinusMinutes;
     private final int pollIntervalMinutes;
+    private final Duration pollBudget;
+    private final boolean continuousConsumer;
 
     @Autowired
     public CcdPollingService(IdamService idamService, CcdConnectorService ccdConnectorService,
-                             LastRunTimeService lastRunTimeService,
+                             CaseTypeRegistry caseTypeRegistry, CcdSearchExecutor ccdSearchExecutor,
+                             CatchUpPlanner catchUpPlanner, LastRunTimeService lastRunTimeService,
+                             PollLeaseService pollLeaseService, PollMembershipService pollMembershipService,
+                             EnqueuedCaseService enqueuedCaseService,
+                             TaskOutboxService taskOutboxService, PlatformTransactionManager transactionManager,
                              @Value("${service.poll_interval_minutes}") int pollIntervalMinutes,
                              @Value("${service.last_modified_minus_minutes}") int lastModifiedTimeMinusMinutes,
-                             QueueProducer<Task> queueProducer, QueueConsumer<Task> queueConsumer,
-                             DeadQueueConsumer deadQueueConsumer, TelemetryClient telemetryClient) {
+                             @Value("${ccd.search.poll_budget_seconds}") long pollBudgetSeconds,
+                             QueueConsumer<Task> queueConsumer, DeadQueueConsumer deadQueueConsumer,
+                             @Value("${servicebus.queue.consumer_mode}") String consumerMode,
+                             TelemetryClient telemetryClient) {
         this.idamService = idamService;
         this.ccdConnectorService = ccdConnectorService;
+        this.caseTypeRegistry = caseTypeRegistry;
+        this.ccdSearchExecutor = ccdSearchExecutor;
+        this.catchUpPlanner = catchUpPlanner;
         this.lastRunTimeService = lastRunTimeService;
-        this.queueProducer = queueProducer;
+        this.pollLeaseService = pollLeaseService;
+        this.pollMembershipService = pollMembershipService;
+        this.enqueuedCaseService = enqueuedCaseService;
+        this.taskOutboxService = taskOutboxService;
+        // the writes of the poll are short transactions of their own, no transaction is held across remote calls
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
         this.queueConsumer = queueConsumer;
         this.deadQueueConsumer = deadQueueConsumer;
         this.telemetryClient = telemetryClient;
         this.lastModifiedTimeMinusMinutes = lastModifiedTimeMinusMinutes;
         this.pollIntervalMinutes = pollIntervalMinutes;
+        this.pollBudget = Duration.ofSeconds(pollBudgetSeconds);
+        this.continuousConsumer = "continuous".equals(consumerMode);
     }
 
     @Scheduled(cron = "${service.poll_cron}")
-    @Transactional(isolation = Isolation.SERIALIZABLE, rollbackFor = {Exception.class})
     public void pollCcdEndpoint() throws IdamConnectionException, CcdConnectionException {
         telemetryClient.trackEvent("work-allocation start polling");
+        if (pollMembershipService.isEnabled()) {
+            pollAssignedCaseTypes();
+            return;
+        }
+
+        Optional<PollLease> lease = pollLeaseService.acquire(PollLeaseService.CCD_POLL);
+        if (!lease.isPresent()) {
+            log.info("Another instance is polling CCD");
+            return;
+        }
+        try {
+            poll(lease.get());
+        } finally {
+            pollLeaseService.release(lease.get());
+        }
+    }
 
+    private void poll(PollLease lease) throws IdamConnectionException, CcdConnectionException {
         // 0. get last run time
-        LocalDateTime lastRunTime = readLastRunTime();
+        LocalDateTime lastRunTime = readLastRunTime(lease);
         log.info("last run time: {}", lastRunTime);
         LocalDateTime now = LocalDateTime.now();
         long minutes = lastRunTime.until(now, ChronoUnit.MINUTES);
@@ -75,8 +123,64 @@ public class CcdPollingService {
             log.info("The last run was {} minutes ago", minutes);
             return;
         }
-        // write last poll time to db, we will roll-back if there is an
-        lastRunTimeService.updateLastRuntime(now);
+
+        Map<CaseType, PollLease> leases = new LinkedHashMap<>();
+        caseTypeRegistry.getEnabledCaseTypes().forEach(caseType -> leases.put(caseType, lease));
+        pollCaseTypes(leases, lastRunTime, now);
+        fenced(lease, () -> lastRunTimeService.updateLastRuntime(now));
+    }
+
+    /**
+     * Polls the case types assigned to this instance, each under a lease of its own so a case type that just
+     * moved to this instance is not polled while its previous owner is still at it. Every case type is polled
+     * once per poll interval, measured from its own checkpoint.
+     */
+    private void pollAssignedCaseTypes() throws IdamConnectionException, CcdConnectionException {
+        LocalDateTime now = LocalDateTime.now();
+        Map<CaseType, PollLease> leases = new LinkedHashMap<>();
+        for (CaseType caseType : pollMembershipService.assign(caseTypeRegistry.getEnabledCaseTypes())) {
+            if (!isDue(caseType, now)) {
+                continue;
+            }
+            Optional<PollLease> lease = pollLeaseService.acquire(PollLeaseService.CCD_POLL + "/" + caseType.getName());
+            if (lease.isPresent()) {
+                leases.put(caseType, lease.get());
+            } else {
+                log.info("{} is still polled by another instance", caseType.getName());
+            }
+        }
+        if (leases.isEmpty()) {
+            return;
+        }
+        try {
+            // a case type polled for the first time starts one poll interval ago
+            pollCaseTypes(leases, now.minusMinutes(pollIntervalMinutes), now);
+        } finally {
+            leases.values().forEach(pollLeaseService::release);
+        }
+    }
+
+    /**
+     * The windows of a poll end {@code last_modified_minus_minutes} before it, so the checkpoint of a case type
+     * trails its last poll by at least that much.
+     */
+    private boolean isDue(CaseType caseType, LocalDateTime now) {
+        Optional<LocalDateTime> checkpoint = lastRunTimeService.getLastRunTime(caseType.getName());
+        if (!checkpoint.isPresent()) {
+            return true;
+        }
+        long minutes = checkpoint.get().plusMinutes(lastModifiedTimeMinusMinutes).until(now, ChronoUnit.MINUTES);
+        if (minutes < pollIntervalMinutes) {
+            log.info("{} was polled {} minutes ago", caseType.getName(), minutes);
+            return false;
+        }
+        return true;
+    }
+
+    private void pollCaseTypes(Map<CaseType, PollLease> leases, LocalDateTime lastRunTime, LocalDateTime now)
+            throws IdamConnectionException, CcdConnectionException {
+        // every search of the poll, with its retries and hedges, has to finish within the budget
+        PollDeadline deadline = PollDeadline.after(pollBudget);
 
         // 1. Start polling the queue
         final DelayedExecutor delayedExecutor = new DelayedExecutor(Executors.newScheduledThreadPool(1));
@@ -85,6 +189,10 @@ public class CcdPollingService {
         deadQueueConsumer
             .runConsumer(delayedExecutor, now.plusMinutes(20))
             .thenCompose(aVoid -> {
+                if (continuousConsumer) {
+                    // the task queue is already read by the ContinuousQueueConsumer
+                    return CompletableFuture.completedFuture(null);
+                }
                 // Start queue client
                 log.info("poll started");
                 return queueConsumer.runConsumer(delayedExecutor, now.plusMinutes(20));
@@ -98,103 +206,190 @@ public class CcdPollingService {
         // 2. Create service token
         String serviceToken = this.idamService.generateServiceAuthorization();
 
-        // 3. create/get user token
-        String userAuthToken = this.idamService.getIdamOauth2Token();
-
-        // 4. connect to CCD, and get the data
-        String queryFromDateTime = lastRunTime.minusMinutes(lastModifiedTimeMinusMinutes).toString();
-        String queryToDateTime = now.minusMinutes(lastModifiedTimeMinusMinutes).toString();
-        // Divorce cases
-        Map<String, Object> divorceData = ccdConnectorService.searchDivorceCases(userAuthToken, serviceToken,
-            queryFromDateTime, queryToDateTime, CcdConnectorService.CASE_TYPE_ID_DIVORCE);
-        log.info("Connecting (divorce) to CCD was successful");
-        log.info("total number of divorce cases: {}", divorceData.get("total"));
-        telemetryClient.trackMetric("num_of_divorce_cases", (Integer) divorceData.get("total"));
-
-        // Divorce Exception cases
-        Map<String, Object> divorceExceptionData = ccdConnectorService.searchDivorceCases(userAuthToken, serviceToken,
-                queryFromDateTime, queryToDateTime,  CcdConnectorService.CASE_TYPE_ID_DIVORCE_EXCEPTION);
-        log.info("Connecting (divorceExceptionData) to CCD was successful");
-        log.info("total number of divorce exception cases: {}", divorceExceptionData.get("total"));
-        telemetryClient.trackMetric("num_of_divorce_exception_cases", (Integer) divorceExceptionData.get("total"));
-
-        // Divorce Evidence Handled cases
-        Map<String, Object> divorceEvidenceData = ccdConnectorService.searchDivorceEvidenceHandledCases(userAuthToken,
-                serviceToken, queryFromDateTime, queryToDateTime, CcdConnectorService.CASE_TYPE_ID_DIVORCE);
-        log.info("Connecting (divorce Evidence) to CCD was successful");
-        log.info("Divorce Evidence EVIDENCE_FLOW: {}", divorceEvidenceData.get("EVIDENCE_FLOW"));
-        log.info("total number of divorce Evidence cases: {}", divorceEvidenceData.get("total"));
-        telemetryClient.trackMetric("num_of_divorce_evidence_cases", (Integer) divorceEvidenceData.get("total"));
-
-        // Probate gop cases
-        Map<String, Object> probateGoPData = ccdConnectorService.findProbateCases(userAuthToken, serviceToken,
-                queryFromDateTime, queryToDateTime, CcdConnectorService.PROBATE_CASE_TYPE_ID_GOP);
-        log.info("Connecting to CCD - GoP was successful");
-        log.info("Total number of probate gop cases: {}", probateGoPData.get("total"));
-        telemetryClient.trackMetric("num_of_probate_gop_cases", (Integer) probateGoPData.get("total"));
-        // Probate caveat cases
-        Map<String, Object> probateCaveatData = ccdConnectorService.findProbateCases(userAuthToken, serviceToken,
-                queryFromDateTime, queryToDateTime, CcdConnectorService.PROBATE_CASE_TYPE_ID_CAVEAT);
-        log.info("Connecting to CCD - Caveat was successful");
-        log.info("Total number of probate caveat cases: {}", probateCaveatData.get("total"));
-        telemetryClient.trackMetric("num_of_probate_caveat_cases", (Integer) probateCaveatData.get("total"));
-        // Probate bsp exception cases
-        Map<String, Object> probateBspExpData = ccdConnectorService.findProbateCases(userAuthToken, serviceToken,
-            queryFromDateTime, queryToDateTime, CcdConnectorService.PROBATE_CASE_TYPE_ID_BSP_EXCEPTION);
-        log.info("Connecting to CCD - bsp was successful");
-        log.info("Total number of probate bsp cases: {}", probateBspExpData.get("total"));
-        telemetryClient.trackMetric("num_of_probate_bsp_cases", (Integer) probateBspExpData.get("total"));
-
-        // FR cases
-        Map<String, Object> frData = ccdConnectorService.findFinancialRemedyCases(userAuthToken, serviceToken,
-            queryFromDateTime, queryToDateTime, CcdConnectorService.FR_CASE_TYPE);
-        log.info("Connecting (fr) to CCD was successful");
-        log.info("total number of fr cases: {}", frData.get("total"));
-        telemetryClient.trackMetric("num_of_fr_cases", (Integer) frData.get("total"));
-
-        // FR Exception cases
-        Map<String, Object> frExceptionData = ccdConnectorService.findFinancialRemedyCases(userAuthToken, serviceToken,
-            queryFromDateTime, queryToDateTime, CcdConnectorService.FR_EXCEPTION_CASE_TYPE);
-        log.info("Connecting (frException) to CCD was successful");
-        log.info("total number of fr exception cases: {}", frExceptionData.get("total"));
-        telemetryClient.trackMetric("num_of_fr_exception_cases", (Integer) frExceptionData.get("total"));
-
-        // 5. Process data
-        @SuppressWarnings("unchecked")
-        List<Task> tasks = mergeResponse(divorceData, divorceExceptionData, divorceEvidenceData,
-                probateGoPData, probateCaveatData, probateBspExpData, frData, frExceptionData);
-        log.info("Total number of tasks: {}", tasks.size());
-        telemetryClient.trackMetric("num_of_tasks", tasks.size());
-
-        // 6. send to azure service bus
-        queueProducer.placeItemsInQueue(tasks, Task::getId);
-    }
-
-    private LocalDateTime readLastRunTime() {
+        // 3. create/get user token, the case types share it so a token CCD rejected is only replaced once
+        AtomicReference<String> userAuthToken = new AtomicReference<>(this.idamService.getIdamOauth2Token());
+
+        // 4. every case type catches up from its own checkpoint, a failing case type does not hold back the others
+        AtomicInteger numOfTasks = new AtomicInteger();
+        Map<String, CcdSearchExecutor.CcdSearch<Integer>> searches = new LinkedHashMap<>();
+        leases.forEach((caseType, lease) -> searches.put(caseType.getName(),
+            () -> pollCaseType(lease, caseType, lastRunTime, now, deadline, userAuthToken, serviceToken, numOfTasks)));
+        CcdSearchExecutor.SearchResults<Integer> searchResults = ccdSearchExecutor.execute(searches, deadline);
+        searchResults.getResults().forEach((name, numOfCases) -> {
+            log.info("Connecting ({}) to CCD was successful", name);
+            log.info("total number of {} cases: {}", name, numOfCases);
+            telemetryClient.trackMetric(caseTypeRegistry.get(name).getMetricName(), numOfCases);
+        });
+        log.info("Total number of tasks: {}", numOfTasks.get());
+        telemetryClient.trackMetric("num_of_tasks", numOfTasks.get());
+        if (searchResults.hasFailures()) {
+            log.warn("CCD search failed for {}, they continue from their own checkpoint on the next run",
+                searchResults.getFailures().keySet());
+            telemetryClient.trackEvent("work-allocation partial polling");
+        }
+    }
+
+    /**
+     * Searches the case type window by window from its checkpoint. The checkpoint is moved to the latest
+     * last modified date found in every window, or to the end of the window when it had no cases.
+     * The tasks of every page are written to the outbox as soon as the page was read, so only one page is held
+     * in memory. The checkpoint is only moved once the whole window was read, a window that failed half way is
+     * searched again and its queued cases are filtered out as unchanged.
+     * No new window is started once the deadline passed, the next poll continues from the checkpoint.
+     */
+    private int pollCaseType(PollLease lease, CaseType caseType, LocalDateTime lastRunTime, LocalDateTime now,
+                             PollDeadline deadline, AtomicReference<String> userAuthToken, String serviceToken,
+                             AtomicInteger numOfTasks) throws CcdConnectionException {
+        LocalDateTime checkpoint = readCheckpoint(lease, caseType, lastRunTime);
+        CatchUpPlan plan = catchUpPlanner.plan(checkpoint, now.minusMinutes(lastModifiedTimeMinusMinutes));
+        int numOfCases = 0;
+        while (plan.hasNext()) {
+            if (deadline.isExpired()) {
+                log.warn("The poll deadline passed, {} continues from {} on the next run", caseType.getName(),
+                    checkpoint);
+                break;
+            }
+            CatchUpPlan.Window window = plan.next();
+            log.info("polling {} between {} and {}", caseType.getName(), window.getFrom(), window.getTo());
+            // the windows overlap, a case modified just before the checkpoint may only be visible now
+            String queryFromDateTime = window.getFrom().minusMinutes(lastModifiedTimeMinusMinutes).toString();
+            String queryToDateTime = window.getTo().toString();
+            WindowResult result = pollCases(lease, caseType, searchAfter -> searchWithIdamToken(userAuthToken,
+                token -> ccdConnectorService.searchCases(token, serviceToken, queryFromDateTime, queryToDateTime,
+                    caseType, searchAfter, deadline)), numOfTasks);
+            numOfCases += result.numOfCases;
+            LocalDateTime seen = result.lastModified != null ? result.lastModified : window.getTo();
+            if (seen.isAfter(checkpoint)) {
+                checkpoint = seen;
+                LocalDateTime windowCheckpoint = checkpoint;
+                fenced(lease, () -> lastRunTimeService.saveLastRunTime(caseType.getName(), windowCheckpoint));
+            }
+            plan.feedback(result.numOfCases, ccdConnectorService.getPageSize());
+        }
+        return numOfCases;
+    }
+
+    /**
+     * Searches with the current idam token. When CCD rejects the token it is dropped from the cache and the
+     * search is retried once with a new one.
+     */
+    private Map<String, Object> searchWithIdamToken(AtomicReference<String> userAuthToken, TokenSearch search)
+            throws CcdConnectionException {
+        String token = userAuthToken.get();
+        try {
+            return search.search(token);
+        } catch (CcdConnectionException e) {
+            if (!e.isAuthFailure()) {
+                throw e;
+            }
+            log.warn("CCD rejected the idam token with status {}, retrying with a new token", e.getStatus());
+            String newToken;
+            synchronized (userAuthToken) {
+                // another case type may have replaced the token already
+                if (userAuthToken.get().equals(token)) {
+                    idamService.invalidateIdamOauth2Token();
+                    try {
+                        userAuthToken.set(idamService.getIdamOauth2Token());
+                    } catch (IdamConnectionException idamFailure) {
+                        e.addSuppressed(idamFailure);
+                        throw e;
+                    }
+                }
+                newToken = userAuthToken.get();
+            }
+            return search.search(newToken);
+        }
+    }
+
+    private LocalDateTime readCheckpoint(PollLease lease, CaseType caseType, LocalDateTime lastRunTime) {
+        return lastRunTimeService.getLastRunTime(caseType.getName()).orElseGet(() -> {
+            // a new case type starts where the poll left off, it is saved straight away so a failure
+            // of its first search does not lose the window
+            fenced(lease, () -> lastRunTimeService.saveLastRunTime(caseType.getName(), lastRunTime));
+            return lastRunTime;
+        });
+    }
+
+    private void commitPage(PollLease lease, CaseType caseType, List<Task> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        // the tasks are marked as queued in the transaction that writes them to the outbox
+        fenced(lease, () -> {
+            taskOutboxService.add(tasks);
+            enqueuedCaseService.markEnqueued(caseType.getName(), tasks);
+        });
+    }
+
+    /**
+     * Runs the write in a short transaction that first checks the poll still holds its lease.
+     */
+    private void fenced(PollLease lease, Runnable write) {
+        writeTransaction.executeWithoutResult(status -> {
+            pollLeaseService.checkHeld(lease);
+            write.run();
+        });
+    }
+
+    private WindowResult pollCases(PollLease lease, CaseType caseType, CcdSearchIterator.PageFetcher pageFetcher,
+                                   AtomicInteger numOfTasks) throws CcdConnectionException {
+        CcdSearchIterator pages = new CcdSearchIterator(pageFetcher, ccdConnectorService.getPageSize());
+        WindowResult result = new WindowResult();
+        while (pages.hasNext()) {
+            Map<String, Object> page = pages.next();
+            // a page takes at most the search timeout, renewing after every page keeps the lease
+            pollLeaseService.renew(lease);
+            List<Task> found = toTasks(page, caseType);
+            found.stream().map(Task::getLastModifiedDate).filter(Objects::nonNull).forEach(result::seen);
+            // the windows overlap, cases that did not change since they were queued are not sent again
+            List<Task> tasks = enqueuedCaseService.filterUnchanged(caseType.getName(), found);
+            result.numOfCases += getCases(page).size();
+            commitPage(lease, caseType, tasks);
+            numOfTasks.addAndGet(tasks.size());
+        }
+        return result;
+    }
+
+    private LocalDateTime readLastRunTime(PollLease lease) {
         Optional<LocalDateTime> lastRunTime = lastRunTimeService.getLastRunTime();
         return lastRunTime.orElseGet(() -> {
             LocalDateTime defaultLastRun = lastRunTimeService.getMinDate();
-            lastRunTimeService.insertLastRunTime(defaultLastRun);
+            fenced(lease, () -> lastRunTimeService.insertLastRunTime(defaultLastRun));
             return defaultLastRun;
         });
     }
 
-    @SuppressWarnings("unchecked")
-    private List<Task> mergeResponse(Map<String, Object>... data) {
+    private List<Task> toTasks(Map<String, Object> page, CaseType caseType) {
         List<Task> tasks = new ArrayList<>();
-        Arrays.stream(data).forEach(stringObjectMap -> {
-            String caseTypeId = (String)stringObjectMap.get("case_type_id");
-            String evidenceFlow = (String)stringObjectMap.get("EVIDENCE_FLOW");
-            List<Map<String, Object>> cases = (List<Map<String, Object>>) stringObjectMap.get("cases");
-            cases.stream().forEach(o -> {
-                try {
-                    tasks.add(Task.fromCcdCase(o, caseTypeId, evidenceFlow));
-                } catch (Exception e) {
-                    log.error("Failed to parse case", e);
-                }
-            });
+        getCases(page).forEach(o -> {
+            try {
+                tasks.add(caseType.getTransformer().transform(o, caseType.getCaseTypeId()));
+            } catch (Exception e) {
+                log.error("Failed to parse case", e);
+            }
         });
         return tasks;
     }
 
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> getCases(Map<String, Object> page) {
+        List<Map<String, Object>> cases = (List<Map<String, Object>>) page.get("cases");
+        return cases != null ? cases : Collections.emptyList();
+    }
+
+    @FunctionalInterface
+    private interface TokenSearch {
+        Map<String, Object> search(String userAuthToken) throws CcdConnectionException;
+    }
+
+    private static class WindowResult {
+        private int numOfCases;
+        private LocalDateTime lastModified;
+
+        private void seen(LocalDateTime caseLastModified) {
+            if (lastModified == null || caseLastModified.isAfter(lastModified)) {
+                lastModified = caseLastModified;
+            }
+        }
+    }
 }
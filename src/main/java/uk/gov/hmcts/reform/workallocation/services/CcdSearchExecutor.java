@@ -0,0 +1,170 @@
+package uk.gov.hmcts.reform.workallocation.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uk.gov.hmcts.reform.workallocation.exception.CcdConnectionException;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PreDestroy;
+
+/**
+ * Runs the CCD searches of a poll either one after the other or fanned out on a bounded pool.
+ * A failing search does not affect the others. A search still running at the deadline of the
+ * poll is interrupted and waited for up to the search timeout, so it normally stopped before the poll released
+ * its leases. A search that does not react to the interrupt, e.g. a blocking socket read of the feign client, is
+ * logged and left to finish on its own, its writes are fenced and fail once the leases were released.
+ */
+@Service
+@Slf4j
+public class CcdSearchExecutor {
+
+    private final boolean parallel;
+    private final ExecutorService executorService;
+    private final long stopTimeoutMillis;
+
+    @Autowired
+    public CcdSearchExecutor(@Value("${ccd.search.parallel}") boolean parallel,
+                             @Value("${ccd.search.threads}") int threads,
+                             @Value("${ccd.search.timeout_seconds}") long stopTimeoutSeconds) {
+        this.parallel = parallel;
+        this.executorService = parallel ? Executors.newFixedThreadPool(threads) : null;
+        this.stopTimeoutMillis = TimeUnit.SECONDS.toMillis(stopTimeoutSeconds);
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Executes the given searches. The results keep the order of the searches map, failures are collected per
+     * search.
+     */
+    public <T> SearchResults<T> execute(Map<String, CcdSearch<T>> searches, PollDeadline deadline) {
+        return parallel ? executeParallel(searches, deadline) : executeSerial(searches);
+    }
+
+    private <T> SearchResults<T> executeSerial(Map<String, CcdSearch<T>> searches) {
+        SearchResults<T> searchResults = new SearchResults<>();
+        searches.forEach((name, search) -> {
+            try {
+                searchResults.results.put(name, search.search());
+            } catch (CcdConnectionException e) {
+                log.error("CCD search ({}) failed", name, e);
+                searchResults.failures.put(name, e);
+            }
+        });
+        return searchResults;
+    }
+
+    private <T> SearchResults<T> executeParallel(Map<String, CcdSearch<T>> searches, PollDeadline deadline) {
+        Map<String, RunningSearch<T>> running = new LinkedHashMap<>();
+        searches.forEach((name, search) -> running.put(name, new RunningSearch<>(name, search, executorService)));
+
+        SearchResults<T> searchResults = new SearchResults<>();
+        running.forEach((name, search) -> {
+            try {
+                searchResults.results.put(name, search.await(deadline, stopTimeoutMillis));
+            } catch (Throwable e) {
+                log.error("CCD search ({}) failed", name, e);
+                searchResults.failures.put(name, e);
+            }
+        });
+        return searchResults;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    public interface CcdSearch<T> {
+        T search() throws CcdConnectionException;
+    }
+
+    /**
+     * A search submitted to the pool. It either runs to the end or is skipped when the deadline passed before
+     * it started.
+     */
+    private static class RunningSearch<T> {
+
+        private final String name;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final Future<?> task;
+
+        RunningSearch(String name, CcdSearch<T> search, ExecutorService executorService) {
+            this.name = name;
+            task = executorService.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return;
+                }
+                try {
+                    result.complete(search.search());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+
+        T await(PollDeadline deadline, long stopTimeoutMillis) throws Throwable {
+            try {
+                return result.get(deadline.remaining().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw e;
+            } catch (TimeoutException e) {
+                if (claimed.compareAndSet(false, true)) {
+                    task.cancel(false);
+                    throw e;
+                }
+                // interrupt a backoff or a blocking call and wait until the search stopped
+                task.cancel(true);
+                try {
+                    result.get(stopTimeoutMillis, TimeUnit.MILLISECONDS);
+                } catch (ExecutionException expected) {
+                    // the search is reported as timed out
+                } catch (TimeoutException stillRunning) {
+                    log.warn("CCD search ({}) is still running {} ms after the poll deadline, leaving it behind",
+                        name, stopTimeoutMillis);
+                }
+                throw e;
+            }
+        }
+    }
+
+    public static class SearchResults<T> {
+
+        private final Map<String, T> results = new LinkedHashMap<>();
+
+        private final Map<String, Throwable> failures = new LinkedHashMap<>();
+
+        public Map<String, T> getResults() {
+            return Collections.unmodifiableMap(results);
+        }
+
+        public Map<String, Throwable> getFailures() {
+            return Collections.unmodifiableMap(failures);
+        }
+
+        public boolean hasFailures() {
+            return !failures.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package uk.gov.hmcts.reform.workallocation.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.hmcts.reform.workallocation.exception.CcdConnectionException;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
+
+/**
+ * Keeps a slow or failing CCD search from using up the poll. A search that takes longer than the p95 of the
+ * recent searches gets a second, identical request and the first response wins. A failed search is retried
+ * after a jittered backoff, unless CCD rejected it in a way a retry can not change. Searches are reads, so running
+ * one twice is safe. Every attempt, hedge and backoff stays within the deadline of the poll, the request that lost
+ * or timed out is cancelled so it does not hold on to one of the threads.
+ */
+@Component
+@Slf4j
+public class CcdSearchHedger {
+
+    private static final double HEDGE_PERCENTILE = 0.95;
+
+    private final Duration searchTimeout;
+    private final boolean hedgeEnabled;
+    private final long initialHedgeDelayMillis;
+    private final long minHedgeDelayMillis;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final LatencyWindow latencies = new LatencyWindow(100);
+    // the searches run here, so a blocking client can be hedged as well
+    private final ExecutorService executorService;
+
+    @Autowired
+    public CcdSearchHedger(@Value("${ccd.search.timeout_seconds}") long searchTimeoutSeconds,
+                           @Value("${ccd.search.hedge.enabled}") boolean hedgeEnabled,
+                           @Value("${ccd.search.hedge.initial_delay_millis}") long initialHedgeDelayMillis,
+                           @Value("${ccd.search.hedge.min_delay_millis}") long minHedgeDelayMillis,
+                           @Value("${ccd.search.hedge.threads}") int threads,
+                           @Value("${ccd.search.retry.max_attempts}") int maxAttempts,
+                           @Value("${ccd.search.retry.initial_backoff_millis}") long initialBackoffMillis,
+                           @Value("${ccd.search.retry.max_backoff_millis}") long maxBackoffMillis) {
+        this.searchTimeout = Duration.ofSeconds(searchTimeoutSeconds);
+        this.hedgeEnabled = hedgeEnabled;
+        this.initialHedgeDelayMillis = initialHedgeDelayMillis;
+        this.minHedgeDelayMillis = minHedgeDelayMillis;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.executorService = Executors.newFixedThreadPool(Math.max(1, threads));
+    }
+
+    /**
+     * Runs the search until it succeeds, fails with a status that is not retryable, the attempts are used up or
+     * the deadline passes.
+     *
+     * @throws CcdConnectionException with the last failure when no attempt succeeded
+     */
+    public Map<String, Object> search(PollDeadline deadline, Supplier<CompletableFuture<Map<String, Object>>> search)
+            throws CcdConnectionException {
+        Throwable failure = null;
+        for (int attempt = 1; attempt <= maxAttempts && !deadline.isExpired(); attempt++) {
+            Duration remaining = deadline.remaining();
+            Duration timeout = remaining.compareTo(searchTimeout) < 0 ? remaining : searchTimeout;
+            try {
+                return hedged(search, timeout).join();
+            } catch (CompletionException e) {
+                failure = e.getCause() != null ? e.getCause() : e;
+                log.warn("CCD search attempt {} of {} failed: {}", attempt, maxAttempts, failure.toString());
+                if (failure instanceof CcdConnectionException && !((CcdConnectionException) failure).isRetryable()) {
+                    break;
+                }
+            }
+            if (attempt < maxAttempts && !backOff(attempt, deadline)) {
+                break;
+            }
+        }
+        if (failure instanceof CcdConnectionException) {
+            throw (CcdConnectionException) failure;
+        }
+        throw new CcdConnectionException(failure != null ? "Failed to connect ccd."
+            : "The poll deadline passed before the CCD search", failure);
+    }
+
+    /**
+     * The delay before a search is hedged, the p95 of the recent searches once there are enough of them.
+     */
+    public long getHedgeDelayMillis() {
+        long p95 = latencies.percentile(HEDGE_PERCENTILE);
+        return p95 < 0 ? initialHedgeDelayMillis : Math.max(minHedgeDelayMillis, p95);
+    }
+
+    private CompletableFuture<Map<String, Object>> hedged(Supplier<CompletableFuture<Map<String, Object>>> search,
+                                                          Duration timeout) {
+        CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+        List<Attempt> attempts = new CopyOnWriteArrayList<>();
+        AtomicInteger running = new AtomicInteger(1);
+        BiConsumer<Map<String, Object>, Throwable> onComplete = (response, throwable) -> {
+            if (throwable == null) {
+                result.complete(response);
+            } else if (running.decrementAndGet() == 0) {
+                result.completeExceptionally(throwable);
+            }
+        };
+        attempts.add(start(search, onComplete));
+
+        long hedgeDelay = getHedgeDelayMillis();
+        if (hedgeEnabled && hedgeDelay < timeout.toMillis()) {
+            CompletableFuture.runAsync(() -> {
+                if (!result.isDone()) {
+                    log.info("CCD search is slower than {} ms, sending a hedged request", hedgeDelay);
+                    running.incrementAndGet();
+                    Attempt hedge = start(search, onComplete);
+                    attempts.add(hedge);
+                    // the other request may have answered while the hedge was started
+                    if (result.isDone()) {
+                        hedge.cancel();
+                    }
+                }
+            }, CompletableFuture.delayedExecutor(hedgeDelay, TimeUnit.MILLISECONDS, executorService));
+        }
+        return result.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+            .whenComplete((response, throwable) -> attempts.forEach(Attempt::cancel));
+    }
+
+    private Attempt start(Supplier<CompletableFuture<Map<String, Object>>> search,
+                          BiConsumer<Map<String, Object>, Throwable> onComplete) {
+        long started = System.nanoTime();
+        Attempt attempt = new Attempt();
+        attempt.result.whenComplete((response, throwable) -> {
+            if (throwable == null) {
+                latencies.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            }
+        }).whenComplete(onComplete);
+        try {
+            attempt.task = executorService.submit(() -> attempt.run(search));
+        } catch (RejectedExecutionException e) {
+            attempt.result.completeExceptionally(e);
+        }
+        return attempt;
+    }
+
+    /**
+     * Waits a random time up to the exponential backoff of the attempt. Returns false when the wait does not
+     * fit into the deadline.
+     */
+    private boolean backOff(int attempt, PollDeadline deadline) {
+        long cap = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        long backoff = ThreadLocalRandom.current().nextLong(cap + 1);
+        if (backoff >= deadline.remaining().toMillis()) {
+            return false;
+        }
+        try {
+            Thread.sleep(backoff);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * One request of a search. Cancelling it interrupts a blocking client and cancels the response of a
+     * non-blocking one.
+     */
+    private static class Attempt {
+
+        private final CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+        private volatile Future<?> task;
+        private volatile CompletableFuture<Map<String, Object>> response;
+
+        void run(Supplier<CompletableFuture<Map<String, Object>>> search) {
+            try {
+                response = search.get();
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            response.whenComplete((answer, throwable) -> {
+                if (throwable == null) {
+                    result.complete(answer);
+                } else {
+                    result.completeExceptionally(throwable instanceof CompletionException
+                        && throwable.getCause() != null ? throwable.getCause() : throwable);
+                }
+            });
+            // the attempt may have been cancelled before its response existed
+            if (result.isCancelled()) {
+                response.cancel(true);
+            }
+        }
+
+        void cancel() {
+            if (!result.cancel(false)) {
+                return;
+            }
+            Future<?> runningTask = task;
+            if (runningTask != null) {
+                runningTask.cancel(true);
+            }
+            CompletableFuture<Map<String, Object>> pendingResponse = response;
+            if (pendingResponse != null) {
+                pendingResponse.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * The latencies of the last successful searches.
+     */
+    private static class LatencyWindow {
+
+        private static final int MIN_SAMPLES = 20;
+
+        private final long[] samples;
+        private int next;
+        private int count;
+
+        LatencyWindow(int size) {
+            this.samples = new long[size];
+        }
+
+        synchronized void record(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        /**
+         * Returns the percentile, or -1 while there are too few samples.
+         */
+        synchronized long percentile(double percentile) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(percentile * count) - 1];
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package uk.gov.hmcts.reform.workallocation.services;
+
+import lombok.extern.slf4j.Slf4j;
+import uk.gov.hmcts.reform.workallocation.exception.CcdConnectionException;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a CCD search page by page with search_after, so only one page is held in memory at a time.
+ */
+@Slf4j
+public class CcdSearchIterator {
+
+    private final PageFetcher pageFetcher;
+    private final int pageSize;
+
+    private SearchAfter searchAfter;
+    private boolean lastPage;
+
+    public CcdSearchIterator(PageFetcher pageFetcher, int pageSize) {
+        this.pageFetcher = pageFetcher;
+        this.pageSize = pageSize;
+    }
+
+    public boolean hasNext() {
+        return !lastPage;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> next() throws CcdConnectionException {
+        Map<String, Object> page = pageFetcher.fetch(searchAfter);
+        List<Map<String, Object>> cases = (List<Map<String, Object>>) page.get("cases");
+        if (cases == null || cases.isEmpty() || cases.size() < pageSize) {
+            lastPage = true;
+            return page;
+        }
+        SearchAfter next = SearchAfter.fromCcdCase(cases.get(cases.size() - 1));
+        if (next.equals(searchAfter)) {
+            log.warn("CCD returned the same page again after {}, stop paging", searchAfter);
+            lastPage = true;
+        }
+        searchAfter = next;
+        return page;
+    }
+
+    @FunctionalInterface
+    public interface PageFetcher {
+        Map<String, Object> fetch(SearchAfter searchAfter) throws CcdConnectionException;
+    }
+}
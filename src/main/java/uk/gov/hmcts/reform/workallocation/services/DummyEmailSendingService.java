@@ -6,6 +6,8 @@ import org.springframework.stereotype.Service;
 import uk.gov.hmcts.reform.workallocation.email.IEmailSendingService;
 import uk.gov.hmcts.reform.workallocation.model.Task;
 
+import java.util.List;
+
 @Slf4j
 @Service
 @ConditionalOnProperty(name = "smtp.enabled", havingValue = "false")
@@ -16,4 +18,10 @@ public class DummyEmailSendingService implements IEmailSendingService {
         Thread.sleep(2000);
         log.info("DummyEmailSendingService sent task: {}", task);
     }
+
+    @Override
+    public void sendDigest(List<Task> tasks, String deeplinkBaseUrl) throws Exception {
+        Thread.sleep(2000);
+        log.info("DummyEmailSendingService sent digest of tasks: {}", tasks);
+    }
 }
@@ -3,19 +3,24 @@ package uk.gov.hmcts.reform.workallocation.services;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.VelocityEngine;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import uk.gov.hmcts.reform.workallocation.email.IEmailSendingService;
+import uk.gov.hmcts.reform.workallocation.email.SmtpTransportPool;
+import uk.gov.hmcts.reform.workallocation.email.TemplateRegistry;
 import uk.gov.hmcts.reform.workallocation.exception.EmailSendingException;
 import uk.gov.hmcts.reform.workallocation.model.Task;
 
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import javax.annotation.PreDestroy;
 import javax.mail.Authenticator;
 import javax.mail.Message;
 import javax.mail.MessagingException;
@@ -30,11 +35,11 @@ import javax.mail.internet.MimeMessage;
 @ConditionalOnProperty(name = "smtp.enabled", havingValue = "true")
 public class EmailSendingService implements IEmailSendingService {
 
-    private static final String TEMPLATE_DIR = "templates/";
     private static final String NO_JURISDICTION = "No Jurisdiction";
 
-    private final VelocityEngine velocityEngine;
+    private final TemplateRegistry templateRegistry;
     private final Session session;
+    private final SmtpTransportPool transportPool;
     private final String smtpFrom;
     private final Map<String, String> serviceEmails = new HashMap<>();
 
@@ -45,9 +50,12 @@ public class EmailSendingService implements IEmailSendingService {
                                @Value("${smtp.password}") String smtpPassword,
                                @Value("${service.email}") String divorceServiceEmail,
                                @Value("${service.probate.email}") String probateServiceEmail,
-                               VelocityEngine velocityEngine) {
+                               @Value("${smtp.max_connections}") int maxConnections,
+                               @Value("${smtp.pool.idle_timeout_seconds}") long idleTimeoutSeconds,
+                               TemplateRegistry templateRegistry) {
         this.session = createSession(smtpHost, smtpPort, smtpUser, smtpPassword);
-        this.velocityEngine = velocityEngine;
+        this.transportPool = new SmtpTransportPool(this::connect, maxConnections, idleTimeoutSeconds);
+        this.templateRegistry = templateRegistry;
         this.smtpFrom = smtpUser;
         this.serviceEmails.put("DIVORCE", divorceServiceEmail);
         this.serviceEmails.put("PROBATE", probateServiceEmail);
@@ -63,36 +71,90 @@ public class EmailSendingService implements IEmailSendingService {
             VelocityContext velocityContext = new VelocityContext();
             velocityContext.put("jurisdiction", task.getJurisdiction());
             velocityContext.put("lastModifiedDate", task.getLastModifiedDate());
-            // it's an ugly hack now but the url structure of prod/non prod ccd is very different
-            if (deeplinkBaseUrl.contains("manage-case.platform.hmcts.net")) {
-                velocityContext.put("deepLinkUrl", deeplinkBaseUrl + task.getId());
-            } else {
-                velocityContext.put("deepLinkUrl", deeplinkBaseUrl + task.getJurisdiction()
-                    +  "/" + task.getCaseTypeId() + "/" + task.getId());
-            }
+            velocityContext.put("deepLinkUrl", getDeepLinkUrl(task, deeplinkBaseUrl));
             String jurisdiction = task.getJurisdiction() != null ? task.getJurisdiction() : NO_JURISDICTION;
-            String templateFileName = jurisdiction.equalsIgnoreCase(NO_JURISDICTION)
-                ? "default.vm"
-                : jurisdiction.toLowerCase() + ".vm";
 
             StringWriter stringWriter = new StringWriter();
-            Template template = velocityEngine.getTemplate(TEMPLATE_DIR + templateFileName);
+            Template template = templateRegistry.getTemplate(task.getJurisdiction());
             template.merge(velocityContext, stringWriter);
 
-            MimeMessage msg = createMimeMessage(deeplinkBaseUrl);
-            msg.setReplyTo(InternetAddress.parse(smtpFrom, false));
-            msg.setFrom(InternetAddress.parse(smtpFrom, false)[0]);
-            msg.setSubject(task.getId() + " - " + task.getState() + " - " + jurisdiction.toUpperCase(), "UTF-8");
-            msg.setText(stringWriter.toString(), "UTF-8", "html");
-
-            msg.setRecipients(Message.RecipientType.TO, InternetAddress.parse(emailTo, false));
-            Transport.send(msg);
+            send(emailTo, deeplinkBaseUrl, task.getId() + " - " + task.getState() + " - " + jurisdiction.toUpperCase(),
+                stringWriter.toString());
             log.info("Email sending successful");
         } catch (Exception e) {
             throw new EmailSendingException("Failed to send email", e);
         }
     }
 
+    @Override
+    public void sendDigest(List<Task> tasks, String deeplinkBaseUrl) throws EmailSendingException {
+        Task first = tasks.get(0);
+        String emailTo = serviceEmails.get(first.getJurisdiction());
+        log.info("Sending digest of {} tasks in state {} to Email address {}", tasks.size(), first.getState(), emailTo);
+
+        try {
+            List<Map<String, Object>> digestTasks = new ArrayList<>();
+            for (Task task : tasks) {
+                Map<String, Object> digestTask = new HashMap<>();
+                digestTask.put("id", task.getId());
+                digestTask.put("lastModifiedDate", task.getLastModifiedDate());
+                digestTask.put("deepLinkUrl", getDeepLinkUrl(task, deeplinkBaseUrl));
+                digestTasks.add(digestTask);
+            }
+            VelocityContext velocityContext = new VelocityContext();
+            velocityContext.put("jurisdiction", first.getJurisdiction());
+            velocityContext.put("state", first.getState());
+            velocityContext.put("tasks", digestTasks);
+            String jurisdiction = first.getJurisdiction() != null ? first.getJurisdiction() : NO_JURISDICTION;
+
+            StringWriter stringWriter = new StringWriter();
+            templateRegistry.getDigestTemplate().merge(velocityContext, stringWriter);
+
+            send(emailTo, deeplinkBaseUrl, tasks.size() + " tasks - " + first.getState() + " - "
+                + jurisdiction.toUpperCase(), stringWriter.toString());
+            log.info("Digest sending successful");
+        } catch (Exception e) {
+            throw new EmailSendingException("Failed to send digest", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${smtp.pool.eviction_interval_millis}")
+    public void evictIdleConnections() {
+        transportPool.evictIdle();
+    }
+
+    @PreDestroy
+    public void closeConnections() {
+        transportPool.close();
+    }
+
+    private void send(String emailTo, String deeplinkBaseUrl, String subject, String body)
+        throws MessagingException {
+        MimeMessage msg = createMimeMessage(deeplinkBaseUrl);
+        msg.setReplyTo(InternetAddress.parse(smtpFrom, false));
+        msg.setFrom(InternetAddress.parse(smtpFrom, false)[0]);
+        msg.setSubject(subject, "UTF-8");
+        msg.setText(body, "UTF-8", "html");
+
+        msg.setRecipients(Message.RecipientType.TO, InternetAddress.parse(emailTo, false));
+        msg.saveChanges();
+        transportPool.send(msg);
+    }
+
+    private String getDeepLinkUrl(Task task, String deeplinkBaseUrl) {
+        // it's an ugly hack now but the url structure of prod/non prod ccd is very different
+        if (deeplinkBaseUrl.contains("manage-case.platform.hmcts.net")) {
+            return deeplinkBaseUrl + task.getId();
+        }
+        return deeplinkBaseUrl + task.getJurisdiction() +  "/" + task.getCaseTypeId() + "/" + task.getId();
+    }
+
+    private Transport connect() throws MessagingException {
+        Transport transport = session.getTransport("smtp");
+        transport.connect();
+        return transport;
+    }
+
     private MimeMessage createMimeMessage(String deepLinkUrl) throws MessagingException {
         MimeMessage msg = new MimeMessage(this.session);
         msg.addHeader("Content-type", "text/HTML; charset=UTF-8");
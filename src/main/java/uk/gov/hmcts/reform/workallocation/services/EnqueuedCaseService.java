@@ -0,0 +1,178 @@
+package uk.gov.hmcts.reform.workallocation.services;
+
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import uk.gov.hmcts.reform.workallocation.model.Task;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.transaction.Transactional;
+
+/**
+ * Remembers the last modified date and state of every case placed on the queue, so a case found again by the
+ * overlapping polling windows is only sent when it changed. The index lives in the enqueued_case table with the
+ * most recently seen cases cached in memory in front of it. A case is remembered per case type, the case types
+ * that find the same case give it their own state.
+ */
+@Service
+@Transactional
+@Slf4j
+public class EnqueuedCaseService {
+
+    // keeps the insert below the bind parameter limit of postgres
+    private static final int MAX_ROWS_PER_INSERT = 500;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final Map<CaseKey, Fingerprint> cache;
+    private final long retentionDays;
+
+    @Autowired
+    public EnqueuedCaseService(@Value("${service.dedup.cache_size}") int cacheSize,
+                               @Value("${service.dedup.retention_days}") long retentionDays) {
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<CaseKey, Fingerprint>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CaseKey, Fingerprint> eldest) {
+                return size() > cacheSize;
+            }
+        });
+        this.retentionDays = retentionDays;
+    }
+
+    /**
+     * Returns the tasks whose case was not placed on the queue by the case type with the same last modified date
+     * and state.
+     */
+    public List<Task> filterUnchanged(String caseType, List<Task> tasks) {
+        List<String> uncached = new ArrayList<>();
+        for (Task task : tasks) {
+            if (cache.get(new CaseKey(caseType, task.getId())) == null) {
+                uncached.add(task.getId());
+            }
+        }
+        if (!uncached.isEmpty()) {
+            loadFingerprints(caseType, uncached);
+        }
+        List<Task> changed = tasks.stream()
+            .filter(task -> !Fingerprint.of(task).equals(cache.get(new CaseKey(caseType, task.getId()))))
+            .collect(Collectors.toList());
+        if (changed.size() < tasks.size()) {
+            log.info("{} of {} tasks are unchanged since they were queued", tasks.size() - changed.size(),
+                tasks.size());
+        }
+        return changed;
+    }
+
+    public void markEnqueued(String caseType, Collection<Task> tasks) {
+        // a case can only be written once per statement, the last one found wins
+        Map<String, Task> latest = new LinkedHashMap<>();
+        tasks.forEach(task -> latest.put(task.getId(), task));
+        List<Task> rows = new ArrayList<>(latest.values());
+        for (int from = 0; from < rows.size(); from += MAX_ROWS_PER_INSERT) {
+            upsert(caseType, rows.subList(from, Math.min(rows.size(), from + MAX_ROWS_PER_INSERT)));
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // a rolled back window is searched again, its cases must not be filtered out by the cache
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remember(caseType, rows);
+                }
+            });
+        } else {
+            remember(caseType, rows);
+        }
+    }
+
+    @Scheduled(cron = "${service.dedup.purge_cron}")
+    public void purge() {
+        int deleted = em.createNativeQuery("delete from enqueued_case where enqueued_at < :before")
+            .setParameter("before", Timestamp.valueOf(LocalDateTime.now().minusDays(retentionDays)))
+            .executeUpdate();
+        log.info("Removed {} cases from the enqueued case index", deleted);
+    }
+
+    private void remember(String caseType, List<Task> tasks) {
+        tasks.forEach(task -> cache.put(new CaseKey(caseType, task.getId()), Fingerprint.of(task)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void loadFingerprints(String caseType, List<String> caseIds) {
+        List<Object[]> rows = em.createNativeQuery("select case_id, last_modified, state from enqueued_case"
+                + " where case_type = :caseType and case_id in (:caseIds)")
+            .setParameter("caseType", caseType)
+            .setParameter("caseIds", caseIds)
+            .getResultList();
+        for (Object[] row : rows) {
+            LocalDateTime lastModified = ((Timestamp) row[1]).toLocalDateTime();
+            cache.put(new CaseKey(caseType, (String) row[0]), new Fingerprint(lastModified, (String) row[2]));
+        }
+    }
+
+    private void upsert(String caseType, List<Task> tasks) {
+        StringBuilder sql = new StringBuilder(
+            "insert into enqueued_case (case_type, case_id, last_modified, state) values ");
+        for (int i = 0; i < tasks.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append("(?").append(i * 4 + 1).append(", ?").append(i * 4 + 2)
+                .append(", ?").append(i * 4 + 3).append(", ?").append(i * 4 + 4).append(')');
+        }
+        sql.append(" on conflict (case_type, case_id) do update set last_modified = excluded.last_modified,"
+            + " state = excluded.state, enqueued_at = now()");
+        Query query = em.createNativeQuery(sql.toString());
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            query.setParameter(i * 4 + 1, caseType)
+                .setParameter(i * 4 + 2, task.getId())
+                .setParameter(i * 4 + 3, Timestamp.valueOf(task.getLastModifiedDate()))
+                .setParameter(i * 4 + 4, state(task));
+        }
+        query.executeUpdate();
+    }
+
+    private static String state(Task task) {
+        return task.getState() != null ? task.getState() : "";
+    }
+
+    @EqualsAndHashCode
+    private static class CaseKey {
+        private final String caseType;
+        private final String caseId;
+
+        CaseKey(String caseType, String caseId) {
+            this.caseType = caseType;
+            this.caseId = caseId;
+        }
+    }
+
+    @EqualsAndHashCode
+    private static class Fingerprint {
+        private final LocalDateTime lastModified;
+        private final String state;
+
+        Fingerprint(LocalDateTime lastModified, String state) {
+            this.lastModified = lastModified;
+            this.state = state;
+        }
+
+        static Fingerprint of(Task task) {
+            return new Fingerprint(task.getLastModifiedDate(), state(task));
+        }
+    }
+}
@@ -31,7 +31,7 @@ public class LastRunTimeService {
     }
 
     public Optional<LocalDateTime> getLastRunTime() {
-        Query q = em.createNativeQuery("select last_run from last_run_time where id = :id for update")
+        Query q = em.createNativeQuery("select last_run from last_run_time where id = :id")
             .setParameter("id", 1);
         LocalDateTime lastRunTime = null;
         try {
@@ -43,6 +43,33 @@ public class LastRunTimeService {
         return Optional.ofNullable(lastRunTime);
     }
 
+    /**
+     * Returns the checkpoint of a case type, the last modified date up to which its cases have been queued.
+     */
+    public Optional<LocalDateTime> getLastRunTime(String caseType) {
+        Query q = em.createNativeQuery("select last_run from last_run_time where case_type = :caseType")
+            .setParameter("caseType", caseType);
+        LocalDateTime lastRunTime = null;
+        try {
+            Date lastRun = (Date) q.getSingleResult();
+            lastRunTime = LocalDateTime.ofInstant(lastRun.toInstant(), ZoneId.systemDefault());
+        } catch (NoResultException e) {
+            log.info("Can't find the checkpoint of {} in db", caseType);
+        }
+        return Optional.ofNullable(lastRunTime);
+    }
+
+    /**
+     * Saves the checkpoint of a case type, the poll calls it in the transaction that writes the tasks of the window.
+     */
+    public void saveLastRunTime(String caseType, LocalDateTime time) {
+        Query q = em.createNativeQuery("insert into last_run_time (case_type, last_run) values (:caseType, :lastRun)"
+            + " on conflict (case_type) do update set last_run = excluded.last_run")
+            .setParameter("caseType", caseType)
+            .setParameter("lastRun", time);
+        q.executeUpdate();
+    }
+
     public void insertLastRunTime(LocalDateTime time) {
         Query q = em.createNativeQuery("insert into last_run_time (id, last_run) values (:id, :lastRun)")
             .setParameter("id", 1)
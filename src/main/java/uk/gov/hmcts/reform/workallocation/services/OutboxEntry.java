@@ -0,0 +1,15 @@
+package uk.gov.hmcts.reform.workallocation.services;
+
+import lombok.Value;
+
+/**
+ * A task waiting in the outbox to be placed on the queue, the payload is the task as json.
+ */
+@Value
+public class OutboxEntry {
+
+    long id;
+    String messageId;
+    String payload;
+    int attempts;
+}
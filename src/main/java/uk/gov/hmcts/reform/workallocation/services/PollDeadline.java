@@ -0,0 +1,29 @@
+package uk.gov.hmcts.reform.workallocation.services;
+
+import java.time.Duration;
+
+/**
+ * The time a poll has left. It is handed down to every search, so the retries and hedges of a slow search
+ * can not run past the end of the poll.
+ */
+public final class PollDeadline {
+
+    private final long deadlineNanos;
+
+    private PollDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static PollDeadline after(Duration budget) {
+        return new PollDeadline(System.nanoTime() + budget.toNanos());
+    }
+
+    public Duration remaining() {
+        long remaining = deadlineNanos - System.nanoTime();
+        return remaining > 0 ? Duration.ofNanos(remaining) : Duration.ZERO;
+    }
+
+    public boolean isExpired() {
+        return remaining().isZero();
+    }
+}
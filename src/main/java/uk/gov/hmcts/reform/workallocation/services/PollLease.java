@@ -0,0 +1,14 @@
+package uk.gov.hmcts.reform.workallocation.services;
+
+import lombok.Value;
+
+/**
+ * A lease held by this instance, the fencing token tells it apart from every earlier and later holder.
+ */
+@Value
+public class PollLease {
+
+    String name;
+    String owner;
+    long fencingToken;
+}
@@ -0,0 +1,109 @@
+package uk.gov.hmcts.reform.workallocation.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uk.gov.hmcts.reform.workallocation.exception.LeaseLostException;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Transactional;
+
+/**
+ * Makes sure only one instance polls CCD at a time without keeping a transaction open for the whole poll.
+ * A lease is a row in poll_lease with an expiry and a fencing token that is incremented on every take over.
+ * The holder renews the lease as it goes and checks its token in the transaction of every write, so an instance
+ * that lost its lease can not move the checkpoints any more.
+ */
+@Service
+@Transactional
+@Slf4j
+public class PollLeaseService {
+
+    public static final String CCD_POLL = "ccd_poll";
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final long ttlSeconds;
+    private final String instanceName = ManagementFactory.getRuntimeMXBean().getName();
+
+    @Autowired
+    public PollLeaseService(@Value("${service.poll_lease.ttl_seconds}") long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /**
+     * Takes the lease if nobody holds it or the lease of its holder expired.
+     */
+    @SuppressWarnings("unchecked")
+    public Optional<PollLease> acquire(String name) {
+        String owner = instanceName + "/" + UUID.randomUUID();
+        List<Number> tokens = em.createNativeQuery("insert into poll_lease (name, owner, fencing_token, expires_at)"
+                + " values (:name, :owner, 1, now() + make_interval(secs => :ttl))"
+                + " on conflict (name) do update set owner = excluded.owner,"
+                + " fencing_token = poll_lease.fencing_token + 1, expires_at = excluded.expires_at"
+                + " where poll_lease.expires_at <= now() returning fencing_token")
+            .setParameter("name", name)
+            .setParameter("owner", owner)
+            .setParameter("ttl", ttlSeconds)
+            .getResultList();
+        if (tokens.isEmpty()) {
+            return Optional.empty();
+        }
+        PollLease lease = new PollLease(name, owner, tokens.get(0).longValue());
+        log.info("Acquired the {} lease with fencing token {}", name, lease.getFencingToken());
+        return Optional.of(lease);
+    }
+
+    /**
+     * Extends the lease by its time to live.
+     *
+     * @throws LeaseLostException when the lease expired or was taken over
+     */
+    public void renew(PollLease lease) {
+        int updated = em.createNativeQuery("update poll_lease set expires_at = now() + make_interval(secs => :ttl)"
+                + " where name = :name and fencing_token = :token and expires_at > now()")
+            .setParameter("ttl", ttlSeconds)
+            .setParameter("name", lease.getName())
+            .setParameter("token", lease.getFencingToken())
+            .executeUpdate();
+        if (updated == 0) {
+            throw lost(lease);
+        }
+    }
+
+    /**
+     * Checks the lease in the transaction of the caller. The lease row stays locked until that transaction ends,
+     * so the lease can not be taken over before the caller commits.
+     *
+     * @throws LeaseLostException when the lease expired or was taken over
+     */
+    public void checkHeld(PollLease lease) {
+        List<?> rows = em.createNativeQuery("select fencing_token from poll_lease"
+                + " where name = :name and fencing_token = :token and expires_at > now() for share")
+            .setParameter("name", lease.getName())
+            .setParameter("token", lease.getFencingToken())
+            .getResultList();
+        if (rows.isEmpty()) {
+            throw lost(lease);
+        }
+    }
+
+    public void release(PollLease lease) {
+        em.createNativeQuery("update poll_lease set expires_at = now() where name = :name and fencing_token = :token")
+            .setParameter("name", lease.getName())
+            .setParameter("token", lease.getFencingToken())
+            .executeUpdate();
+    }
+
+    private static LeaseLostException lost(PollLease lease) {
+        return new LeaseLostException("The " + lease.getName() + " lease with fencing token "
+            + lease.getFencingToken() + " is not held any more");
+    }
+}
@@ -0,0 +1,118 @@
+package uk.gov.hmcts.reform.workallocation.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Transactional;
+
+/**
+ * Shares the case types out between the running instances when sharding is enabled. Every instance keeps a
+ * heartbeat in poll_member, members whose heartbeat is older than the member ttl are removed. The case types
+ * sorted by name are dealt out to the live members sorted by id, so all members work out the same assignment
+ * and the case types move as soon as an instance joins or leaves.
+ */
+@Service
+@Transactional
+@Slf4j
+public class PollMembershipService {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final boolean enabled;
+    private final long memberTtlSeconds;
+    private final String memberId = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+
+    @Autowired
+    public PollMembershipService(@Value("${service.sharding.enabled}") boolean enabled,
+                                 @Value("${service.sharding.member_ttl_seconds}") long memberTtlSeconds) {
+        this.enabled = enabled;
+        this.memberTtlSeconds = memberTtlSeconds;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getMemberId() {
+        return memberId;
+    }
+
+    @Scheduled(fixedDelayString = "${service.sharding.heartbeat_millis}")
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+        em.createNativeQuery("insert into poll_member (member_id) values (:memberId)"
+                + " on conflict (member_id) do update set heartbeat_at = now()")
+            .setParameter("memberId", memberId)
+            .executeUpdate();
+        int expired = em.createNativeQuery("delete from poll_member"
+                + " where heartbeat_at < now() - make_interval(secs => :ttl)")
+            .setParameter("ttl", memberTtlSeconds)
+            .executeUpdate();
+        if (expired > 0) {
+            log.info("Removed {} members without a heartbeat, the case types are shared out again", expired);
+        }
+    }
+
+    /**
+     * Returns the case types this instance polls, the given case types when sharding is disabled.
+     */
+    public List<CaseType> assign(List<CaseType> caseTypes) {
+        if (!enabled) {
+            return caseTypes;
+        }
+        List<String> members = getLiveMembers();
+        if (!members.contains(memberId)) {
+            // the first poll can come before the first heartbeat
+            heartbeat();
+            members = getLiveMembers();
+        }
+        int index = members.indexOf(memberId);
+        List<CaseType> sorted = caseTypes.stream()
+            .sorted(Comparator.comparing(CaseType::getName))
+            .collect(Collectors.toList());
+        List<CaseType> assigned = new ArrayList<>();
+        for (int i = 0; i < sorted.size(); i++) {
+            if (i % members.size() == index) {
+                assigned.add(sorted.get(i));
+            }
+        }
+        log.info("Member {} of {} polls {}", index + 1, members.size(),
+            assigned.stream().map(CaseType::getName).collect(Collectors.toList()));
+        return assigned;
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void leave() {
+        if (!enabled) {
+            return;
+        }
+        // the other members take over the case types on their next poll instead of after the member ttl
+        em.createNativeQuery("delete from poll_member where member_id = :memberId")
+            .setParameter("memberId", memberId)
+            .executeUpdate();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> getLiveMembers() {
+        return em.createNativeQuery("select member_id from poll_member"
+                + " where heartbeat_at >= now() - make_interval(secs => :ttl) order by member_id")
+            .setParameter("ttl", memberTtlSeconds)
+            .getResultList();
+    }
+}
@@ -0,0 +1,19 @@
+package uk.gov.hmcts.reform.workallocation.services;
+
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * The sort values of the last case on a CCD search page, the next page starts after them.
+ */
+@Value
+public class SearchAfter {
+
+    String lastModified;
+    String reference;
+
+    public static SearchAfter fromCcdCase(Map<String, Object> ccdCase) {
+        return new SearchAfter(String.valueOf(ccdCase.get("last_modified")), String.valueOf(ccdCase.get("id")));
+    }
+}
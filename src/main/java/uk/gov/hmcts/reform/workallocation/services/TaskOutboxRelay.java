@@ -0,0 +1,119 @@
+package uk.gov.hmcts.reform.workallocation.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.gov.hmcts.reform.workallocation.model.Task;
+import uk.gov.hmcts.reform.workallocation.queue.BatchSendResult;
+import uk.gov.hmcts.reform.workallocation.queue.QueueProducer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drains the task outbox to the service bus in batches. A batch is claimed in a short transaction, sent without
+ * a transaction open and then deleted, retried or parked in a second short transaction, so no row lock or
+ * connection is held while the service bus is slow. Other instances do not claim the batch while it is being
+ * sent and relay the next one. Failed entries are retried with a backoff until they used up their attempts.
+ * Entries that can not be read or sent within their attempts are parked.
+ */
+@Component
+@Slf4j
+public class TaskOutboxRelay {
+
+    private final TaskOutboxService taskOutboxService;
+    private final QueueProducer<Task> queueProducer;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxAttempts;
+
+    @Autowired
+    public TaskOutboxRelay(TaskOutboxService taskOutboxService, QueueProducer<Task> queueProducer,
+                           ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                           @Value("${servicebus.outbox.batch_size}") int batchSize,
+                           @Value("${servicebus.outbox.retry.max_attempts}") int maxAttempts) {
+        this.taskOutboxService = taskOutboxService;
+        this.queueProducer = queueProducer;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Scheduled(fixedDelayString = "${servicebus.outbox.relay_interval_millis}")
+    public void relay() {
+        int relayed = 0;
+        RelayedBatch batch;
+        do {
+            batch = relayBatch();
+            relayed += batch.sent;
+        } while (batch.claimed == batchSize && batch.sent == batch.claimed);
+        if (relayed > 0) {
+            log.info("{} tasks relayed from the outbox", relayed);
+        }
+    }
+
+    private RelayedBatch relayBatch() {
+        List<OutboxEntry> entries = taskOutboxService.claim(batchSize);
+        List<OutboxEntry> readable = new ArrayList<>();
+        List<Task> tasks = new ArrayList<>();
+        Map<String, List<Long>> retries = new HashMap<>();
+        Map<String, List<Long>> parked = new HashMap<>();
+        for (OutboxEntry entry : entries) {
+            try {
+                tasks.add(objectMapper.readValue(entry.getPayload(), Task.class));
+                readable.add(entry);
+            } catch (IOException e) {
+                log.error("Could not read outbox entry {}", entry.getId(), e);
+                // reading it again will not succeed either
+                parked.computeIfAbsent(e.getMessage(), error -> new ArrayList<>()).add(entry.getId());
+            }
+        }
+
+        // two entries can have the same message id, e.g. a case queued by two case types, so the results are
+        // matched to the entries by their position in the sent list
+        String[] errors = new String[readable.size()];
+        Arrays.fill(errors, "not sent");
+        for (BatchSendResult result : queueProducer.placeItemsInQueue(tasks, Task::getId)) {
+            String error = result.isSuccess() ? null : String.valueOf(result.getError());
+            result.getPositions().forEach(position -> errors[position] = error);
+        }
+
+        List<Long> delete = new ArrayList<>();
+        for (int position = 0; position < readable.size(); position++) {
+            OutboxEntry entry = readable.get(position);
+            if (errors[position] == null) {
+                delete.add(entry.getId());
+            } else {
+                Map<String, List<Long>> failed = entry.getAttempts() + 1 >= maxAttempts ? parked : retries;
+                failed.computeIfAbsent(errors[position], error -> new ArrayList<>()).add(entry.getId());
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            taskOutboxService.delete(delete);
+            retries.forEach((error, ids) -> taskOutboxService.retryLater(ids, error));
+            parked.forEach((error, ids) -> taskOutboxService.park(ids, error));
+        });
+        return new RelayedBatch(entries.size(), delete.size());
+    }
+
+    private static class RelayedBatch {
+        private final int claimed;
+        private final int sent;
+
+        RelayedBatch(int claimed, int sent) {
+            this.claimed = claimed;
+            this.sent = sent;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package uk.gov.hmcts.reform.workallocation.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uk.gov.hmcts.reform.workallocation.model.Task;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.transaction.Transactional;
+
+/**
+ * The task_outbox table holds the tasks found by the poll until the {@link TaskOutboxRelay} has placed them on
+ * the queue. Tasks are written in the transaction that marks their cases as queued, so a task can not be lost
+ * between CCD and the service bus. Entries the relay gave up on are parked, they stay in the table but are not
+ * claimed any more.
+ */
+@Service
+@Transactional
+@Slf4j
+public class TaskOutboxService {
+
+    // keeps the insert below the bind parameter limit of postgres
+    private static final int MAX_ROWS_PER_INSERT = 500;
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final ObjectMapper objectMapper;
+    private final long initialBackoffSeconds;
+    private final long maxBackoffSeconds;
+    private final long claimSeconds;
+
+    @Autowired
+    public TaskOutboxService(ObjectMapper objectMapper,
+                             @Value("${servicebus.outbox.retry.initial_backoff_seconds}") long initialBackoffSeconds,
+                             @Value("${servicebus.outbox.retry.max_backoff_seconds}") long maxBackoffSeconds,
+                             @Value("${servicebus.outbox.claim_seconds}") long claimSeconds) {
+        this.objectMapper = objectMapper;
+        this.initialBackoffSeconds = initialBackoffSeconds;
+        this.maxBackoffSeconds = maxBackoffSeconds;
+        this.claimSeconds = claimSeconds;
+    }
+
+    public void add(List<Task> tasks) {
+        for (int from = 0; from < tasks.size(); from += MAX_ROWS_PER_INSERT) {
+            insert(tasks.subList(from, Math.min(tasks.size(), from + MAX_ROWS_PER_INSERT)));
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} entries that are due and not parked, oldest first, and moves their next attempt
+     * past the claim time. Other relays do not claim them again until then, so the entries can be sent without a
+     * transaction or a row lock held open. An entry whose relay stopped before it was deleted or retried is
+     * claimed again when its claim ran out.
+     */
+    @SuppressWarnings("unchecked")
+    public List<OutboxEntry> claim(int limit) {
+        List<Object[]> rows = em.createNativeQuery("select id, message_id, payload, attempts from task_outbox"
+                + " where parked_at is null and next_attempt_at <= now() order by id limit :limit"
+                + " for update skip locked")
+            .setParameter("limit", limit)
+            .getResultList();
+        List<OutboxEntry> entries = rows.stream()
+            .map(row -> new OutboxEntry(((Number) row[0]).longValue(), (String) row[1], (String) row[2],
+                ((Number) row[3]).intValue()))
+            .collect(Collectors.toList());
+        if (!entries.isEmpty()) {
+            em.createNativeQuery("update task_outbox set next_attempt_at = now() + :claim * interval '1 second'"
+                    + " where id in (:ids)")
+                .setParameter("claim", claimSeconds)
+                .setParameter("ids", entries.stream().map(OutboxEntry::getId).collect(Collectors.toList()))
+                .executeUpdate();
+        }
+        return entries;
+    }
+
+    public void delete(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        em.createNativeQuery("delete from task_outbox where id in (:ids)")
+            .setParameter("ids", ids)
+            .executeUpdate();
+    }
+
+    /**
+     * Puts the entries back for a later attempt, the delay doubles with every attempt up to the max backoff.
+     */
+    public void retryLater(Collection<Long> ids, String error) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        log.warn("{} outbox entries will be retried: {}", ids.size(), error);
+        em.createNativeQuery("update task_outbox set attempts = attempts + 1, last_error = :error,"
+                + " next_attempt_at = now() + least(:maxBackoff, :initialBackoff * power(2, least(attempts, 20)))"
+                + " * interval '1 second' where id in (:ids)")
+            .setParameter("error", truncate(error))
+            .setParameter("maxBackoff", maxBackoffSeconds)
+            .setParameter("initialBackoff", initialBackoffSeconds)
+            .setParameter("ids", ids)
+            .executeUpdate();
+    }
+
+    /**
+     * Stops relaying the entries, they are kept with their last error until someone looked at them.
+     */
+    public void park(Collection<Long> ids, String error) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        log.error("{} outbox entries are parked and will not be relayed again: {} {}", ids.size(), ids, error);
+        em.createNativeQuery("update task_outbox set attempts = attempts + 1, last_error = :error,"
+                + " parked_at = now() where id in (:ids)")
+            .setParameter("error", truncate(error))
+            .setParameter("ids", ids)
+            .executeUpdate();
+    }
+
+    private static String truncate(String error) {
+        return error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+
+    private void insert(List<Task> tasks) {
+        StringBuilder sql = new StringBuilder("insert into task_outbox (message_id, payload) values ");
+        for (int i = 0; i < tasks.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append("(?").append(i * 2 + 1).append(", ?").append(i * 2 + 2).append(')');
+        }
+        Query query = em.createNativeQuery(sql.toString());
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            query.setParameter(i * 2 + 1, task.getId())
+                .setParameter(i * 2 + 2, toJson(task));
+        }
+        query.executeUpdate();
+    }
+
+    private String toJson(Task task) {
+        try {
+            return objectMapper.writeValueAsString(task);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialise task " + task.getId(), e);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package uk.gov.hmcts.reform.workallocation.util;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.ErrorHandler;
+import uk.gov.hmcts.reform.workallocation.exception.LeaseLostException;
 
 import javax.persistence.OptimisticLockException;
 
@@ -12,6 +13,8 @@ public class TaskErrorHandler implements ErrorHandler {
     public void handleError(Throwable t) {
         if (t instanceof OptimisticLockException) {
             log.info("An instance is already running");
+        } else if (t instanceof LeaseLostException) {
+            log.warn("The poll stopped, another instance took over: {}", t.getMessage());
         } else {
             log.error("Something went wrong", t);
         }
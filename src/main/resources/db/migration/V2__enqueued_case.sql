@@ -0,0 +1,12 @@
+-- a case found by two case types, e.g. divorce and divorce_evidence, is queued by each with its own state,
+-- so every case type keeps its own row
+CREATE TABLE IF NOT EXISTS enqueued_case (
+  case_type varchar(64) NOT NULL,
+  case_id varchar(32) NOT NULL,
+  last_modified timestamp NOT NULL,
+  state varchar(255) NOT NULL,
+  enqueued_at timestamp NOT NULL DEFAULT now(),
+  PRIMARY KEY (case_type, case_id)
+);
+
+CREATE INDEX IF NOT EXISTS enqueued_case_enqueued_at_idx ON enqueued_case (enqueued_at);
@@ -0,0 +1,4 @@
+ALTER TABLE last_run_time ADD COLUMN IF NOT EXISTS case_type varchar(64) UNIQUE;
+
+-- the row of the poll itself is inserted with id 1, the case type rows take their ids from the sequence
+SELECT setval(pg_get_serial_sequence('last_run_time', 'id'), GREATEST(1, (SELECT COALESCE(MAX(id), 1) FROM last_run_time)));
@@ -0,0 +1,13 @@
+CREATE TABLE IF NOT EXISTS task_outbox (
+  id BIGSERIAL NOT NULL PRIMARY KEY,
+  message_id varchar(64) NOT NULL,
+  payload text NOT NULL,
+  created_at timestamp NOT NULL DEFAULT now(),
+  attempts integer NOT NULL DEFAULT 0,
+  next_attempt_at timestamp NOT NULL DEFAULT now(),
+  last_error varchar(1000),
+  -- entries the relay gave up on stay in the table for investigation but are no longer claimed
+  parked_at timestamp
+);
+
+CREATE INDEX IF NOT EXISTS task_outbox_next_attempt_at_idx ON task_outbox (next_attempt_at) WHERE parked_at IS NULL;
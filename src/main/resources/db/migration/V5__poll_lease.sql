@@ -0,0 +1,6 @@
+CREATE TABLE IF NOT EXISTS poll_lease (
+  name varchar(64) NOT NULL PRIMARY KEY,
+  owner varchar(255),
+  fencing_token bigint NOT NULL DEFAULT 0,
+  expires_at timestamp NOT NULL
+);
@@ -0,0 +1,5 @@
+CREATE TABLE IF NOT EXISTS poll_member (
+  member_id varchar(255) NOT NULL PRIMARY KEY,
+  joined_at timestamp NOT NULL DEFAULT now(),
+  heartbeat_at timestamp NOT NULL DEFAULT now()
+);
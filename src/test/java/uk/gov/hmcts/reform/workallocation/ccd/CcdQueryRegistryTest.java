@@ -0,0 +1,73 @@
+package uk.gov.hmcts.reform.workallocation.ccd;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.serenitybdd.junit.runners.SerenityRunner;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+@RunWith(SerenityRunner.class)
+public class CcdQueryRegistryTest {
+
+    private static final String PAGE = "\"size\":10";
+
+    private CcdQueryRegistry registry;
+
+    @Before
+    public void setUp() throws IOException {
+        registry = new CcdQueryRegistry("classpath*:ccd/queries/*.json");
+    }
+
+    @Test
+    public void testQueriesAreLoadedFromResources() {
+        Assert.assertEquals(new HashSet<>(Arrays.asList("divorce", "divorce_evidence", "divorce_exception",
+            "probate_gop", "probate_caveat", "probate_bsp", "fr", "fr_exception")), registry.getNames());
+    }
+
+    @Test
+    public void testRenderedQueriesAreValidJson() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        for (String name : registry.getNames()) {
+            JsonNode query = mapper.readTree(registry.get(name).render("2021-07-01T10:00", "2021-07-01T11:00", PAGE));
+
+            JsonNode range = query.at("/query/bool/must/0/range/last_modified");
+            Assert.assertEquals(name, "2021-07-01T10:00", range.get("gt").asText());
+            Assert.assertEquals(name, "2021-07-01T11:00", range.get("lte").asText());
+            Assert.assertEquals(name, 10, query.get("size").asInt());
+            Assert.assertTrue(name, query.get("_source").size() > 0);
+        }
+    }
+
+    @Test
+    public void testBuilderWritesRangeAndMatchClauses() {
+        String json = CcdQueryBuilder.query()
+            .range("last_modified", QueryTemplate.FROM_PLACE_HOLDER, QueryTemplate.TO_PLACE_HOLDER)
+            .matchAny("state", "Submitted", "DARequested")
+            .anyOf(CcdQueryBuilder.query().match("data.caseType", "gop"))
+            .source("reference")
+            .toTemplate()
+            .render("from", "to", PAGE);
+
+        Assert.assertEquals("{\"query\":{\"bool\":{\"must\":["
+            + "{\"range\":{\"last_modified\":{\"gt\":\"from\",\"lte\":\"to\"}}},"
+            + "{\"match\":{\"state\":{\"query\":\"Submitted DARequested\",\"operator\":\"or\"}}},"
+            + "{\"bool\":{\"should\":[{\"bool\":{\"must\":[{\"match\":{\"data.caseType\":\"gop\"}}]}}]}}]}},"
+            + "\"_source\":[\"reference\"]," + PAGE + "}", json);
+    }
+
+    @Test
+    public void testTemplateWithoutPlaceholders() {
+        Assert.assertEquals("{}", QueryTemplate.compile("{}").render("from", "to", PAGE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownQuery() {
+        registry.get("unknown");
+    }
+}
@@ -0,0 +1,103 @@
+package uk.gov.hmcts.reform.workallocation.ccd;
+
+import net.serenitybdd.junit.runners.SerenityRunner;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import uk.gov.hmcts.reform.workallocation.config.CaseTypeConfiguration;
+import uk.gov.hmcts.reform.workallocation.model.Task;
+import uk.gov.hmcts.reform.workallocation.services.CaseType;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(SerenityRunner.class)
+public class CcdSearchResponseDecoderTest {
+
+    private final CcdSearchResponseDecoder decoder = new CcdSearchResponseDecoder();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testOnlyTheTaskFieldsAreKept() throws Exception {
+        Map<String, Object> result = decode(frExceptionResponse());
+
+        Assert.assertEquals(1, result.get("total"));
+        List<Map<String, Object>> cases = (List<Map<String, Object>>) result.get("cases");
+        Assert.assertEquals(1, cases.size());
+        Map<String, Object> ccdCase = cases.get(0);
+        Assert.assertEquals(1563460551495313L, ccdCase.get("id"));
+        Assert.assertEquals("DIVORCE", ccdCase.get("jurisdiction"));
+        Assert.assertEquals("ScannedRecordReceived", ccdCase.get("state"));
+        Assert.assertEquals("2019-07-18T14:36:25.862", ccdCase.get("last_modified"));
+        Assert.assertFalse(ccdCase.containsKey("created_date"));
+        Map<String, Object> caseData = (Map<String, Object>) ccdCase.get("case_data");
+        Assert.assertEquals("NEW_APPLICATION", caseData.get("journeyClassification"));
+        Assert.assertEquals("No", caseData.get("containsPayments"));
+        Assert.assertFalse(caseData.containsKey("scannedDocuments"));
+        Assert.assertFalse(caseData.containsKey("ocrData"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDecodedCaseCanBeTurnedIntoATask() throws Exception {
+        Map<String, Object> result = decode(frExceptionResponse());
+
+        CaseType caseType = CaseTypeConfiguration.defaultCaseTypes().stream()
+            .filter(type -> "fr_exception".equals(type.getName()))
+            .findFirst()
+            .orElseThrow();
+        Task task = caseType.getTransformer().transform(((List<Map<String, Object>>) result.get("cases")).get(0),
+            caseType.getCaseTypeId());
+
+        Assert.assertEquals("1563460551495313", task.getId());
+        Assert.assertEquals("ScannedRecordReceivedFormA", task.getState());
+        Assert.assertEquals(LocalDateTime.of(2019, 7, 18, 14, 36, 25, 862000000), task.getLastModifiedDate());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEmptyResponse() throws Exception {
+        Map<String, Object> result = decode("{\"total\":0,\"cases\":[]}");
+
+        Assert.assertEquals(0, result.get("total"));
+        Assert.assertTrue(((List<Object>) result.get("cases")).isEmpty());
+    }
+
+    private Map<String, Object> decode(String json) throws IOException {
+        return decoder.decode(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    //CHECKSTYLE:OFF
+    private String frExceptionResponse() {
+        return "{\n"
+            + "\"total\": 1,\n"
+            + "\"case_types_results\": [{\"total\": 1, \"case_type_id\": \"FINREM_ExceptionRecord\"}],\n"
+            + "\"cases\": [\n"
+            + "  {\n"
+            + "    \"id\": 1563460551495313,\n"
+            + "    \"jurisdiction\": \"DIVORCE\",\n"
+            + "    \"state\": \"ScannedRecordReceived\",\n"
+            + "    \"version\": null,\n"
+            + "    \"created_date\": \"2019-07-18T14:35:51.473\",\n"
+            + "    \"last_modified\": \"2019-07-18T14:36:25.862\",\n"
+            + "    \"case_data\": {\n"
+            + "      \"journeyClassification\": \"NEW_APPLICATION\",\n"
+            + "      \"containsPayments\": \"No\",\n"
+            + "      \"scannedDocuments\": [\n"
+            + "        {\"id\": \"1\", \"value\": {\"fileName\": \"form-a.pdf\", "
+            + "\"url\": {\"document_url\": \"x\"}}},\n"
+            + "        {\"id\": \"2\", \"value\": {\"fileName\": \"cover.pdf\", \"url\": {\"document_url\": \"y\"}}}\n"
+            + "      ],\n"
+            + "      \"ocrData\": [{\"id\": \"1\", \"value\": {\"key\": \"applicantName\", \"value\": \"Jane\"}}]\n"
+            + "    },\n"
+            + "    \"security_classification\": \"PUBLIC\"\n"
+            + "  }\n"
+            + "]\n"
+            + "}";
+    }
+    //CHECKSTYLE:ON
+}
@@ -0,0 +1,95 @@
+package uk.gov.hmcts.reform.workallocation.ccd;
+
+import net.serenitybdd.junit.runners.SerenityRunner;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import uk.gov.hmcts.reform.workallocation.exception.CcdConnectionException;
+
+import java.net.ConnectException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(SerenityRunner.class)
+public class HttpCcdSearchClientTest {
+
+    @Mock
+    private HttpClient httpClient;
+
+    @Mock
+    private HttpResponse<byte[]> response;
+
+    private HttpCcdSearchClient searchClient;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        searchClient = new HttpCcdSearchClient(httpClient, "http://ccd", Duration.ofSeconds(60));
+    }
+
+    @Test
+    public void testSearchIsPostedAndDecoded() {
+        when(response.statusCode()).thenReturn(200);
+        when(response.body()).thenReturn(("{\"total\":1,\"cases\":[{\"id\":1563460551495313,"
+            + "\"state\":\"Submitted\",\"created_date\":\"2019-07-18T14:35:51.473\"}]}")
+            .getBytes(StandardCharsets.UTF_8));
+        when(httpClient.sendAsync(any(HttpRequest.class), ArgumentMatchers.<HttpResponse.BodyHandler<byte[]>>any()))
+            .thenReturn(CompletableFuture.completedFuture(response));
+
+        Map<String, Object> result = searchClient.searchCases("Bearer user", "Bearer service", "DIVORCE", "{}").join();
+        Assert.assertEquals(1, result.get("total"));
+        Assert.assertEquals(1, ((List<?>) result.get("cases")).size());
+
+        ArgumentCaptor<HttpRequest> request = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient).sendAsync(request.capture(), ArgumentMatchers.<HttpResponse.BodyHandler<byte[]>>any());
+        Assert.assertEquals("http://ccd/searchCases?ctid=DIVORCE", request.getValue().uri().toString());
+        Assert.assertEquals("POST", request.getValue().method());
+        Assert.assertEquals("Bearer user", request.getValue().headers().firstValue("Authorization").orElse(null));
+        Assert.assertEquals("Bearer service",
+            request.getValue().headers().firstValue(CcdClient.SERVICE_AUTH_HEADER).orElse(null));
+        Assert.assertEquals(Duration.ofSeconds(60), request.getValue().timeout().orElse(null));
+    }
+
+    @Test
+    public void testErrorStatusFailsTheSearch() {
+        when(response.statusCode()).thenReturn(503);
+        when(httpClient.sendAsync(any(HttpRequest.class), ArgumentMatchers.<HttpResponse.BodyHandler<byte[]>>any()))
+            .thenReturn(CompletableFuture.completedFuture(response));
+
+        assertConnectionFailure(searchClient.searchCases("", "", "DIVORCE", "{}"), 503);
+    }
+
+    @Test
+    public void testConnectionFailureFailsTheSearch() {
+        when(httpClient.sendAsync(any(HttpRequest.class), ArgumentMatchers.<HttpResponse.BodyHandler<byte[]>>any()))
+            .thenReturn(CompletableFuture.failedFuture(new ConnectException("refused")));
+
+        assertConnectionFailure(searchClient.searchCases("", "", "DIVORCE", "{}"), CcdConnectionException.NO_STATUS);
+    }
+
+    private static void assertConnectionFailure(CompletableFuture<Map<String, Object>> search, int status) {
+        try {
+            search.join();
+            Assert.fail("The search should have failed");
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof CcdConnectionException);
+            Assert.assertEquals(status, ((CcdConnectionException) e.getCause()).getStatus());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package uk.gov.hmcts.reform.workallocation.email;
+
+import net.serenitybdd.junit.runners.SerenityRunner;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import uk.gov.hmcts.reform.workallocation.model.Task;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SerenityRunner.class)
+public class DigestCollectorTest {
+
+    private IEmailSendingService emailSendingService;
+
+    @Before
+    public void setUp() {
+        emailSendingService = mock(IEmailSendingService.class);
+    }
+
+    @Test
+    public void testDigestIsSentWhenItIsFull() throws Exception {
+        DigestCollector collector = collector(2, 3600);
+        Task task1 = getTask("1", "DIVORCE", "Submitted");
+        Task task2 = getTask("2", "DIVORCE", "Submitted");
+        Task task3 = getTask("3", "DIVORCE", "AwaitingPayment");
+
+        CompletableFuture<Void> sent1 = collector.add(task1);
+        CompletableFuture<Void> sent3 = collector.add(task3);
+        CompletableFuture<Void> sent2 = collector.add(task2);
+
+        verify(emailSendingService, timeout(1000)).sendDigest(Arrays.asList(task1, task2), "http://ccd/");
+        CompletableFuture.allOf(sent1, sent2).get(1, TimeUnit.SECONDS);
+        Assert.assertFalse(sent3.isDone());
+        Assert.assertEquals(1, collector.getPendingCount());
+    }
+
+    @Test
+    public void testDigestIsSentWhenTheWindowEnds() throws Exception {
+        DigestCollector collector = collector(50, 0);
+        Task task = getTask("1", "PROBATE", "CaseCreated");
+
+        collector.add(task);
+
+        verify(emailSendingService, timeout(1000)).sendDigest(Collections.singletonList(task), "http://ccd/");
+    }
+
+    @Test
+    public void testTasksAreGivenBackWhenTheDigestFails() throws Exception {
+        doThrow(new RuntimeException("smtp is down")).when(emailSendingService).sendDigest(any(), anyString());
+        DigestCollector collector = collector(1, 3600);
+        Task task = getTask("1", "DIVORCE", "Submitted");
+
+        CompletableFuture<Void> sent = collector.add(task);
+
+        try {
+            sent.get(1, TimeUnit.SECONDS);
+            Assert.fail("The digest should have failed");
+        } catch (ExecutionException e) {
+            Assert.assertEquals("smtp is down", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testDigestWaitsForAnSmtpPermit() throws Exception {
+        DigestCollector collector = new DigestCollector(emailSendingService, new SmtpPermits(0, 0), "http://ccd/", 1,
+            3600);
+
+        CompletableFuture<Void> sent = collector.add(getTask("1", "DIVORCE", "Submitted"));
+
+        try {
+            sent.get(1, TimeUnit.SECONDS);
+            Assert.fail("The digest should have failed");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        verify(emailSendingService, never()).sendDigest(any(), anyString());
+    }
+
+    @Test
+    public void testPendingDigestsAreSentWhenFlushed() throws Exception {
+        DigestCollector collector = collector(50, 3600);
+        Task task = getTask("1", "DIVORCE", "Submitted");
+        CompletableFuture<Void> sent = collector.add(task);
+
+        collector.flushAll().get(1, TimeUnit.SECONDS);
+
+        Assert.assertTrue(sent.isDone());
+        verify(emailSendingService).sendDigest(Collections.singletonList(task), "http://ccd/");
+        Assert.assertEquals(0, collector.getPendingCount());
+    }
+
+    @Test
+    public void testPendingTasksAreGivenBackOnShutdown() throws Exception {
+        DigestCollector collector = collector(50, 3600);
+        Task task = getTask("1", "DIVORCE", "Submitted");
+        CompletableFuture<Void> sent = collector.add(task);
+
+        collector.shutdown();
+
+        Assert.assertTrue(sent.isCompletedExceptionally());
+        verify(emailSendingService, never()).sendDigest(any(), anyString());
+        Assert.assertEquals(0, collector.getPendingCount());
+    }
+
+    private DigestCollector collector(int maxTasks, long windowSeconds) {
+        return new DigestCollector(emailSendingService, new SmtpPermits(1, 60), "http://ccd/", maxTasks, windowSeconds);
+    }
+
+    private Task getTask(String id, String jurisdiction, String state) {
+        return Task.builder().id(id).jurisdiction(jurisdiction).state(state).caseTypeId(jurisdiction).build();
+    }
+}
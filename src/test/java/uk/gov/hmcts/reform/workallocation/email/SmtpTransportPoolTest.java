@@ -0,0 +1,107 @@
+package uk.gov.hmcts.reform.workallocation.email;
+
+import net.serenitybdd.junit.runners.SerenityRunner;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(SerenityRunner.class)
+public class SmtpTransportPoolTest {
+
+    private SmtpTransportPool.TransportFactory transportFactory;
+
+    private Transport transport;
+
+    private Transport otherTransport;
+
+    private Message message;
+
+    @Before
+    public void setUp() throws MessagingException {
+        transportFactory = mock(SmtpTransportPool.TransportFactory.class);
+        transport = mock(Transport.class);
+        otherTransport = mock(Transport.class);
+        message = mock(Message.class);
+        when(message.getAllRecipients()).thenReturn(new Address[] {new InternetAddress("service@mail.com")});
+        when(transportFactory.connect()).thenReturn(transport, otherTransport);
+    }
+
+    @Test
+    public void testConnectionIsReusedAcrossMessages() throws MessagingException {
+        SmtpTransportPool pool = new SmtpTransportPool(transportFactory, 2, 60);
+
+        pool.send(message);
+        pool.send(message);
+
+        verify(transportFactory, times(1)).connect();
+        verify(transport, times(2)).sendMessage(any(), any());
+        Assert.assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void testBrokenConnectionIsReplaced() throws MessagingException {
+        doThrow(new MessagingException("connection reset")).when(transport).sendMessage(any(), any());
+        SmtpTransportPool pool = new SmtpTransportPool(transportFactory, 2, 60);
+
+        pool.send(message);
+
+        verify(transport, times(1)).close();
+        verify(otherTransport, times(1)).sendMessage(any(), any());
+        Assert.assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void testRejectedMessageKeepsTheConnection() throws MessagingException {
+        doThrow(new SendFailedException("invalid address")).when(transport).sendMessage(any(), any());
+        SmtpTransportPool pool = new SmtpTransportPool(transportFactory, 2, 60);
+
+        try {
+            pool.send(message);
+            Assert.fail("SendFailedException expected");
+        } catch (SendFailedException e) {
+            Assert.assertEquals("invalid address", e.getMessage());
+        }
+
+        verify(transport, never()).close();
+        verify(transportFactory, times(1)).connect();
+        Assert.assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void testIdleConnectionsAreEvicted() throws MessagingException {
+        SmtpTransportPool pool = new SmtpTransportPool(transportFactory, 2, 0);
+        pool.send(message);
+
+        pool.evictIdle();
+
+        verify(transport, times(1)).close();
+        Assert.assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void testCloseClosesIdleConnections() throws MessagingException {
+        SmtpTransportPool pool = new SmtpTransportPool(transportFactory, 2, 60);
+        pool.send(message);
+
+        pool.close();
+
+        verify(transport, times(1)).close();
+        Assert.assertEquals(0, pool.getIdleCount());
+    }
+}
@@ -0,0 +1,75 @@
+package uk.gov.hmcts.reform.workallocation.email;
+
+import net.serenitybdd.junit.runners.SerenityRunner;
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Properties;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SerenityRunner.class)
+public class TemplateRegistryTest {
+
+    private VelocityEngine velocityEngine;
+
+    @Before
+    public void setUp() {
+        Properties props = new Properties();
+        props.put("resource.loader", "class");
+        props.put("class.resource.loader.class",
+            "org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader");
+        velocityEngine = spy(new VelocityEngine(props));
+        velocityEngine.init();
+    }
+
+    @Test
+    public void testTemplatesAreParsedOnce() {
+        TemplateRegistry registry = new TemplateRegistry(velocityEngine, false);
+
+        Template divorce = registry.getTemplate("DIVORCE");
+
+        Assert.assertSame(divorce, registry.getTemplate("DIVORCE"));
+        Assert.assertSame(registry.getTemplate(null), registry.getTemplate(null));
+        Assert.assertEquals("templates/probate.vm", registry.getTemplate("PROBATE").getName());
+        verify(velocityEngine, times(4)).getTemplate(anyString(), anyString());
+    }
+
+    @Test
+    public void testMissingJurisdictionUsesTheDefaultTemplate() {
+        TemplateRegistry registry = new TemplateRegistry(velocityEngine, false);
+
+        Assert.assertEquals("templates/default.vm", registry.getTemplate(null).getName());
+    }
+
+    @Test
+    public void testTemplatesAreParsedOnEveryCallWithHotReload() {
+        TemplateRegistry registry = new TemplateRegistry(velocityEngine, true);
+
+        Assert.assertNotSame(registry.getTemplate("DIVORCE"), registry.getTemplate("DIVORCE"));
+    }
+
+    @Test
+    public void testUnknownJurisdictionUsesTheDefaultTemplate() {
+        TemplateRegistry registry = new TemplateRegistry(velocityEngine, false);
+
+        Assert.assertSame(registry.getTemplate(null), registry.getTemplate("UNKNOWN"));
+        Assert.assertSame(registry.getTemplate(null), registry.getTemplate("UNKNOWN"));
+        // the missing template is looked up once
+        verify(velocityEngine, times(1)).getTemplate("templates/unknown.vm", "UTF-8");
+    }
+
+    @Test
+    public void testUnknownJurisdictionUsesTheDefaultTemplateWithHotReload() {
+        TemplateRegistry registry = new TemplateRegistry(velocityEngine, true);
+
+        Assert.assertEquals("templates/default.vm", registry.getTemplate("UNKNOWN").getName());
+    }
+}
@@ -0,0 +1,66 @@
+package uk.gov.hmcts.reform.workallocation.idam;
+
+import net.serenitybdd.junit.runners.SerenityRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import uk.gov.hmcts.reform.authorisation.generators.AuthTokenGenerator;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(SerenityRunner.class)
+public class IdamServiceTest {
+
+    private IdamApiClient idamApiClient;
+
+    private IdamService idamService;
+
+    @Before
+    public void setUp() {
+        AuthTokenGenerator authTokenGenerator = mock(AuthTokenGenerator.class);
+        when(authTokenGenerator.generate()).thenReturn("service_token");
+        idamApiClient = mock(IdamApiClient.class);
+        when(idamApiClient.authorizeCodeType(any(), any(), any(), any(), any()))
+            .thenReturn(new Authorize(null, "code", null, null, null));
+        when(idamApiClient.authorizeToken(any(), any(), any(), any(), any(), any()))
+            .thenReturn(new Authorize(null, null, "access_token", null, 28800L));
+        when(idamApiClient.getUserDetails(anyString()))
+            .thenReturn(UserDetails.builder().id("user_id").build());
+        idamService = new IdamService(authTokenGenerator, idamApiClient, 300);
+    }
+
+    @After
+    public void tearDown() {
+        idamService.shutdown();
+    }
+
+    @Test
+    public void testTokenAndUserAreRequestedOnce() throws IdamConnectionException {
+        IdamTokens first = idamService.getIdamTokens();
+        IdamTokens second = idamService.getIdamTokens();
+
+        Assert.assertEquals("Bearer access_token", first.getIdamOauth2Token());
+        Assert.assertEquals("user_id", second.getUserId());
+        Assert.assertEquals("Bearer access_token", idamService.getIdamOauth2Token());
+        verify(idamApiClient, times(1)).authorizeToken(any(), any(), any(), any(), any(), any());
+        verify(idamApiClient, times(1)).getUserDetails("Bearer access_token");
+    }
+
+    @Test
+    public void testInvalidatedTokenIsRequestedAgainWithItsUser() throws IdamConnectionException {
+        idamService.getIdamTokens();
+
+        idamService.invalidateIdamOauth2Token();
+        idamService.getIdamTokens();
+
+        verify(idamApiClient, times(2)).authorizeToken(any(), any(), any(), any(), any(), any());
+        verify(idamApiClient, times(2)).getUserDetails("Bearer access_token");
+    }
+}
@@ -0,0 +1,130 @@
+package uk.gov.hmcts.reform.workallocation.idam;
+
+import net.serenitybdd.junit.runners.SerenityRunner;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(SerenityRunner.class)
+public class RefreshingTokenCacheTest {
+
+    private static final Instant START = Instant.parse("2021-07-01T12:00:00Z");
+
+    private MutableClock clock;
+
+    private AtomicInteger loads;
+
+    @Before
+    public void setUp() {
+        clock = new MutableClock(START);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    public void testTokenIsLoadedOnce() throws IdamConnectionException {
+        RefreshingTokenCache<String> cache = new RefreshingTokenCache<>("token", this::load,
+            Duration.ofMinutes(5), Runnable::run, clock);
+
+        Assert.assertEquals("token-1", cache.get());
+        clock.advance(Duration.ofMinutes(30));
+        Assert.assertEquals("token-1", cache.get());
+        Assert.assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testTokenIsRefreshedAheadOfExpiryByOneSharedLoad() throws IdamConnectionException {
+        List<Runnable> refreshes = new ArrayList<>();
+        AtomicInteger executions = new AtomicInteger();
+        RefreshingTokenCache<String> cache = new RefreshingTokenCache<>("token", this::load,
+            Duration.ofMinutes(5), runnable -> {
+                // the first load runs straight away, the later ones are kept back
+                if (executions.getAndIncrement() == 0) {
+                    runnable.run();
+                } else {
+                    refreshes.add(runnable);
+                }
+            }, clock);
+        Assert.assertEquals("token-1", cache.get());
+
+        clock.advance(Duration.ofMinutes(56));
+        Assert.assertEquals("token-1", cache.get());
+        Assert.assertEquals("token-1", cache.get());
+        Assert.assertEquals(1, refreshes.size());
+
+        refreshes.get(0).run();
+        Assert.assertEquals("token-2", cache.get());
+        Assert.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testExpiredTokenIsReplaced() throws IdamConnectionException {
+        RefreshingTokenCache<String> cache = new RefreshingTokenCache<>("token", this::load,
+            Duration.ofMinutes(5), Runnable::run, clock);
+        cache.get();
+
+        clock.advance(Duration.ofHours(2));
+        Assert.assertEquals("token-2", cache.get());
+    }
+
+    @Test
+    public void testInvalidatedTokenIsReplaced() throws IdamConnectionException {
+        RefreshingTokenCache<String> cache = new RefreshingTokenCache<>("token", this::load,
+            Duration.ofMinutes(5), Runnable::run, clock);
+        cache.get();
+
+        cache.invalidate();
+        Assert.assertEquals("token-2", cache.get());
+    }
+
+    @Test(expected = IdamConnectionException.class)
+    public void testLoadFailureIsThrown() throws IdamConnectionException {
+        RefreshingTokenCache<String> cache = new RefreshingTokenCache<>("token", () -> {
+            throw new IdamConnectionException("Requesting idam token failed", null);
+        }, Duration.ofMinutes(5), Runnable::run, clock);
+
+        cache.get();
+    }
+
+    private RefreshingTokenCache.ExpiringToken<String> load() {
+        return new RefreshingTokenCache.ExpiringToken<>("token-" + loads.incrementAndGet(),
+            clock.instant().plus(Duration.ofHours(1)));
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
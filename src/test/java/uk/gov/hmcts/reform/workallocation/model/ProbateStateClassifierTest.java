@@ -0,0 +1,191 @@
+package uk.gov.hmcts.reform.workallocation.model;
+
+import net.serenitybdd.junit.runners.SerenityRunner;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static uk.gov.hmcts.reform.workallocation.model.ProbateStateClassifier.rule;
+
+@RunWith(SerenityRunner.class)
+public class ProbateStateClassifierTest {
+
+    private static final List<String> STATES = Arrays.asList("CaseCreated", "CasePrinted", "BOReadyForExamination",
+        "BOCaseStopped", "CaveatRaised", "ScannedRecordReceived", "Other", null);
+    private static final List<String> APPLICATION_TYPES = Arrays.asList("Personal", "Solicitor", "Other", null);
+    private static final List<String> CASE_TYPES = Arrays.asList("gop", "intestacy", "other", null);
+    private static final List<String> YES_NO = Arrays.asList("Yes", "No", null);
+    private static final List<String> REGISTRY_LOCATIONS = Arrays.asList("ctsc", "other", null);
+    private static final List<String> JOURNEYS = Arrays.asList("NEW_APPLICATION", "SUPPLEMENTARY_EVIDENCE",
+        "SUPPLEMENTARY_EVIDENCE_WITH_OCR", "other", null);
+
+    @Test
+    public void testClassifierMatchesTheOldRulesForEveryCombination() {
+        int precedenceFixes = 0;
+        for (String state : STATES) {
+            for (String applicationType : APPLICATION_TYPES) {
+                for (String caseType : CASE_TYPES) {
+                    for (String evidenceHandled : YES_NO) {
+                        for (String registryLocation : REGISTRY_LOCATIONS) {
+                            for (String containsPayments : YES_NO) {
+                                for (String journey : JOURNEYS) {
+                                    Map<String, Object> caseData = new HashMap<>();
+                                    caseData.put("applicationType", applicationType);
+                                    caseData.put("caseType", caseType);
+                                    caseData.put("evidenceHandled", evidenceHandled);
+                                    caseData.put("registryLocation", registryLocation);
+                                    caseData.put("containsPayments", containsPayments);
+                                    caseData.put("journeyClassification", journey);
+                                    String expected = baselineState(state, caseData);
+                                    if (isPrecedenceFix(state, caseData, expected)) {
+                                        // the old chain sent these to the supplementary evidence state
+                                        expected = state;
+                                        precedenceFixes++;
+                                    }
+                                    Assert.assertEquals(caseData + " in " + state, expected,
+                                        ProbateStateClassifier.PROBATE.classify(state, caseData));
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        Assert.assertTrue(precedenceFixes > 0);
+    }
+
+    @Test
+    public void testSupplementaryEvidenceOnlyAppliesToScannedRecordsWithoutPayments() {
+        Map<String, Object> caseData = new HashMap<>();
+        caseData.put("journeyClassification", "SUPPLEMENTARY_EVIDENCE");
+        caseData.put("containsPayments", "Yes");
+
+        Assert.assertEquals("CaseClosed", ProbateStateClassifier.PROBATE.classify("CaseClosed", caseData));
+        Assert.assertEquals("ScannedRecordReceived",
+            ProbateStateClassifier.PROBATE.classify("ScannedRecordReceived", caseData));
+        caseData.put("containsPayments", "No");
+        Assert.assertEquals("BulkScanSupplementaryEvidenceWithoutPayments",
+            ProbateStateClassifier.PROBATE.classify("ScannedRecordReceived", caseData));
+    }
+
+    @Test
+    public void testMissingCaseDataKeepsTheState() {
+        Assert.assertEquals("CaveatRaised", ProbateStateClassifier.PROBATE.classify("CaveatRaised", null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConflictingRulesAreRejected() {
+        new ProbateStateClassifier(Arrays.asList(
+            rule("CaveatRaised").with("applicationType", "Personal").then("CaveatPersonal"),
+            rule("CaveatRaised").with("applicationType", "Personal", "Solicitor").then("CaveatSolicitor")
+        ));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRulesOfAStateLookingAtDifferentFieldsAreRejected() {
+        new ProbateStateClassifier(Arrays.asList(
+            rule("CaveatRaised").with("applicationType", "Personal").then("CaveatPersonal"),
+            rule("CaveatRaised").with("caseType", "gop").then("CaveatGop")
+        ));
+    }
+
+    /**
+     * The missing brackets of the last rule of the old chain made every SUPPLEMENTARY_EVIDENCE case, that no
+     * earlier rule matched, supplementary evidence without payments whatever its state and payments. Only
+     * scanned records without payments are classified that way now.
+     */
+    private static boolean isPrecedenceFix(String state, Map<String, Object> caseData, String baselineState) {
+        return "BulkScanSupplementaryEvidenceWithoutPayments".equals(baselineState)
+            && !("ScannedRecordReceived".equals(state) && "No".equals(caseData.get("containsPayments")));
+    }
+
+    /**
+     * The if-chain the classifier replaced, copied unchanged from Task.getProbateState.
+     */
+    private static String baselineState(String state, Map<String, Object> caseProperties) {
+        if ("CaseCreated".equals(state)) {
+            return "CaseCreated";
+        }
+        if ("CasePrinted".equals(state) && "Personal".equals(caseProperties.get("applicationType"))
+            && "gop".equals(caseProperties.get("caseType")) && "No".equals(caseProperties.get("evidenceHandled"))
+            && "ctsc".equals(caseProperties.get("registryLocation"))) {
+            return "AwaitingDocumentationPersonalEvidenceNotHandled";
+        }
+        if ("CasePrinted".equals(state) && "Solicitor".equals(caseProperties.get("applicationType"))
+            && "gop".equals(caseProperties.get("caseType")) && "No".equals(caseProperties.get("evidenceHandled"))
+            && "ctsc".equals(caseProperties.get("registryLocation"))) {
+            return "AwaitingDocumentationSolicitorEvidenceNotHandled";
+        }
+        if ("BOReadyForExamination".equals(state) && "Personal".equals(caseProperties.get("applicationType"))
+            && "gop".equals(caseProperties.get("caseType")) && "No".equals(caseProperties.get("evidenceHandled"))
+            && "ctsc".equals(caseProperties.get("registryLocation"))) {
+            return "ReadyForExaminationPersonal";
+        }
+        if ("BOReadyForExamination".equals(state) && "Solicitor".equals(caseProperties.get("applicationType"))
+            && "gop".equals(caseProperties.get("caseType")) && "No".equals(caseProperties.get("evidenceHandled"))
+            && "ctsc".equals(caseProperties.get("registryLocation"))) {
+            return "ReadyForExaminationSolicitor";
+        }
+        if ("BOCaseStopped".equals(state) && "Personal".equals(caseProperties.get("applicationType"))
+                && "gop".equals(caseProperties.get("caseType")) && "No".equals(caseProperties.get("evidenceHandled"))) {
+            return "CaseStoppedPersonalEvidenceNotHandled";
+        }
+        if ("BOCaseStopped".equals(state) && "Solicitor".equals(caseProperties.get("applicationType"))
+                && "gop".equals(caseProperties.get("caseType")) && "No".equals(caseProperties.get("evidenceHandled"))) {
+            return "CaseStoppedSolicitorsEvidenceNotHandled";
+        }
+        if ("BOCaseStopped".equals(state) && "Personal".equals(caseProperties.get("applicationType"))
+                && "intestacy".equals(caseProperties.get("caseType"))
+                && "No".equals(caseProperties.get("evidenceHandled"))) {
+            return "CaseStoppedPersonalIntestacyEvidenceNotHandled";
+        }
+        if ("BOCaseStopped".equals(state) && "Solicitor".equals(caseProperties.get("applicationType"))
+                && "intestacy".equals(caseProperties.get("caseType"))
+                && "No".equals(caseProperties.get("evidenceHandled"))) {
+            return "CaseStoppedSolicitorsIntestacyEvidenceNotHandled";
+        }
+        if ("BOCaseStopped".equals(state) && "Personal".equals(caseProperties.get("applicationType"))
+            && "gop".equals(caseProperties.get("caseType")) && "Yes".equals(caseProperties.get("evidenceHandled"))) {
+            return "CaseStoppedPersonalEvidenceHandled";
+        }
+        if ("BOCaseStopped".equals(state) && "Solicitor".equals(caseProperties.get("applicationType"))
+            && "gop".equals(caseProperties.get("caseType")) && "Yes".equals(caseProperties.get("evidenceHandled"))) {
+            return "CaseStoppedSolicitorsEvidenceHandled";
+        }
+        if ("BOCaseStopped".equals(state) && "Personal".equals(caseProperties.get("applicationType"))
+            && "intestacy".equals(caseProperties.get("caseType"))
+            && "Yes".equals(caseProperties.get("evidenceHandled"))) {
+            return "CaseStoppedPersonalIntestacyEvidenceHandled";
+        }
+        if ("BOCaseStopped".equals(state) && "Solicitor".equals(caseProperties.get("applicationType"))
+            && "intestacy".equals(caseProperties.get("caseType"))
+            && "Yes".equals(caseProperties.get("evidenceHandled"))) {
+            return "CaseStoppedSolicitorsIntestacyEvidenceHandled";
+        }
+        if ("CaveatRaised".equals(state) && "Personal".equals(caseProperties.get("applicationType"))) {
+            return "CaveatPersonal";
+        }
+        if ("CaveatRaised".equals(state) && "Solicitor".equals(caseProperties.get("applicationType"))) {
+            return "CaveatSolicitor";
+        }
+        if ("ScannedRecordReceived".equals(state) && "No".equals(caseProperties.get("containsPayments"))
+                && "NEW_APPLICATION".equals(caseProperties.get("journeyClassification"))) {
+            return "BulkScanNewApplicationsReceivedWithoutPayments";
+        }
+        if ("ScannedRecordReceived".equals(state) && "Yes".equals(caseProperties.get("containsPayments"))
+                && "NEW_APPLICATION".equals(caseProperties.get("journeyClassification"))) {
+            return "BulkScanNewApplicationsReceivedWithPayments";
+        }
+        if ("ScannedRecordReceived".equals(state) && "No".equals(caseProperties.get("containsPayments"))
+                && ("SUPPLEMENTARY_EVIDENCE_WITH_OCR".equals(caseProperties.get("journeyClassification")))
+                || ("SUPPLEMENTARY_EVIDENCE".equals(caseProperties.get("journeyClassification")))) {
+            return "BulkScanSupplementaryEvidenceWithoutPayments";
+        }
+        return state;
+    }
+}
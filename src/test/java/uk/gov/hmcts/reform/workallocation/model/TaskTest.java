@@ -5,8 +5,10 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import uk.gov.hmcts.reform.workallocation.config.CaseTypeConfiguration;
 import uk.gov.hmcts.reform.workallocation.exception.CaseTransformException;
-import uk.gov.hmcts.reform.workallocation.services.CcdConnectorService;
+import uk.gov.hmcts.reform.workallocation.services.CaseType;
+import uk.gov.hmcts.reform.workallocation.services.CaseTypeRegistry;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -16,6 +18,9 @@ import static org.junit.Assert.assertEquals;
 @RunWith(SerenityRunner.class)
 public class TaskTest {
 
+    private static final CaseTypeRegistry CASE_TYPES =
+        new CaseTypeRegistry(CaseTypeConfiguration.defaultCaseTypes(), name -> true);
+
     private Map<String, Object> divorce;
     private Map<String, Object> divorceException;
     private Map<String, Object> divorceEvidence;
@@ -123,7 +128,7 @@ public class TaskTest {
 
     @Test
     public void testConvertCaseToTaskHappyPath() throws CaseTransformException {
-        Task task = Task.fromCcdCase(divorce, CcdConnectorService.CASE_TYPE_ID_DIVORCE, null);
+        Task task = transform(divorce, "divorce");
         assertEquals("1563460551495313", task.getId());
         assertEquals("DIVORCE", task.getJurisdiction());
         assertEquals("DIVORCE", task.getCaseTypeId());
@@ -131,7 +136,7 @@ public class TaskTest {
 
     @Test
     public void convertDivorceExceptionCaseToTaskHappyPath() throws CaseTransformException {
-        Task task = Task.fromCcdCase(divorceException, CcdConnectorService.CASE_TYPE_ID_DIVORCE_EXCEPTION, null);
+        Task task = transform(divorceException, "divorce_exception");
         assertEquals("1563460551477777", task.getId());
         assertEquals("DIVORCE", task.getJurisdiction());
         assertEquals("DIVORCE_ExceptionRecord", task.getCaseTypeId());
@@ -139,7 +144,7 @@ public class TaskTest {
 
     @Test
     public void divorceEvidenceHappyPath() throws CaseTransformException {
-        Task task = Task.fromCcdCase(divorceEvidence, CcdConnectorService.CASE_TYPE_ID_DIVORCE, "evidenceHandled");
+        Task task = transform(divorceEvidence, "divorce_evidence");
         assertEquals("1563460551499999", task.getId());
         assertEquals("DIVORCE", task.getJurisdiction());
         assertEquals("DIVORCE", task.getCaseTypeId());
@@ -149,77 +154,77 @@ public class TaskTest {
     @Test
     @SuppressWarnings("unchecked")
     public void probateGoPConversion() throws CaseTransformException {
-        Task task = Task.fromCcdCase(probate, CcdConnectorService.PROBATE_CASE_TYPE_ID_GOP, null);
+        Task task = transform(probate, "probate_gop");
         assertEquals("CaseStoppedPersonalEvidenceNotHandled", task.getState());
         assertEquals("PROBATE", task.getJurisdiction());
 
         ((Map<String, Object>)probate.get("case_data")).put("applicationType", "Solicitor");
-        task = Task.fromCcdCase(probate, CcdConnectorService.PROBATE_CASE_TYPE_ID_GOP, null);
+        task = transform(probate, "probate_gop");
         assertEquals("CaseStoppedSolicitorsEvidenceNotHandled", task.getState());
         assertEquals("PROBATE", task.getJurisdiction());
 
         ((Map<String, Object>)probate.get("case_data")).put("caseType", "intestacy");
-        task = Task.fromCcdCase(probate, CcdConnectorService.PROBATE_CASE_TYPE_ID_GOP, null);
+        task = transform(probate, "probate_gop");
         assertEquals("CaseStoppedSolicitorsIntestacyEvidenceNotHandled", task.getState());
 
         ((Map<String, Object>)probate.get("case_data")).put("applicationType", "Personal");
-        task = Task.fromCcdCase(probate, CcdConnectorService.PROBATE_CASE_TYPE_ID_GOP, null);
+        task = transform(probate, "probate_gop");
         assertEquals("CaseStoppedPersonalIntestacyEvidenceNotHandled", task.getState());
 
 
         ((Map<String, Object>)probate.get("case_data")).put("evidenceHandled", "Yes");
-        task = Task.fromCcdCase(probate, CcdConnectorService.PROBATE_CASE_TYPE_ID_GOP, null);
+        task = transform(probate, "probate_gop");
         assertEquals("CaseStoppedPersonalIntestacyEvidenceHandled", task.getState());
 
         ((Map<String, Object>)probate.get("case_data")).put("applicationType", "Solicitor");
-        task = Task.fromCcdCase(probate, CcdConnectorService.PROBATE_CASE_TYPE_ID_GOP, null);
+        task = transform(probate, "probate_gop");
         assertEquals("CaseStoppedSolicitorsIntestacyEvidenceHandled", task.getState());
 
         ((Map<String, Object>)probate.get("case_data")).put("caseType", "gop");
-        task = Task.fromCcdCase(probate, CcdConnectorService.PROBATE_CASE_TYPE_ID_GOP, null);
+        task = transform(probate, "probate_gop");
         assertEquals("CaseStoppedSolicitorsEvidenceHandled", task.getState());
 
         ((Map<String, Object>)probate.get("case_data")).put("applicationType", "Personal");
         ((Map<String, Object>)probate.get("case_data")).put("caseType", "gop");
-        task = Task.fromCcdCase(probate, CcdConnectorService.PROBATE_CASE_TYPE_ID_GOP, null);
+        task = transform(probate, "probate_gop");
         assertEquals("CaseStoppedPersonalEvidenceHandled", task.getState());
 
         probate.put("state", "CaseCreated");
-        task = Task.fromCcdCase(probate, CcdConnectorService.PROBATE_CASE_TYPE_ID_GOP, null);
+        task = transform(probate, "probate_gop");
         assertEquals("CaseCreated", task.getState());
 
         probate.put("state", "CasePrinted");
         ((Map<String, Object>)probate.get("case_data")).put("evidenceHandled", "No");
-        task = Task.fromCcdCase(probate, CcdConnectorService.PROBATE_CASE_TYPE_ID_GOP, null);
+        task = transform(probate, "probate_gop");
         assertEquals("AwaitingDocumentationPersonalEvidenceNotHandled", task.getState());
 
         probate.put("state", "CasePrinted");
         ((Map<String, Object>)probate.get("case_data")).put("applicationType", "Solicitor");
         ((Map<String, Object>)probate.get("case_data")).put("evidenceHandled", "No");
-        task = Task.fromCcdCase(probate, CcdConnectorService.PROBATE_CASE_TYPE_ID_GOP, null);
+        task = transform(probate, "probate_gop");
         assertEquals("AwaitingDocumentationSolicitorEvidenceNotHandled", task.getState());
 
         probate.put("state", "BOReadyForExamination");
         ((Map<String, Object>)probate.get("case_data")).put("applicationType", "Personal");
         ((Map<String, Object>)probate.get("case_data")).put("caseType", "gop");
-        task = Task.fromCcdCase(probate, CcdConnectorService.PROBATE_CASE_TYPE_ID_GOP, null);
+        task = transform(probate, "probate_gop");
         assertEquals("ReadyForExaminationPersonal", task.getState());
 
         ((Map<String, Object>)probate.get("case_data")).put("applicationType", "Solicitor");
         ((Map<String, Object>)probate.get("case_data")).put("caseType", "gop");
-        task = Task.fromCcdCase(probate, CcdConnectorService.PROBATE_CASE_TYPE_ID_GOP, null);
+        task = transform(probate, "probate_gop");
         assertEquals("ReadyForExaminationSolicitor", task.getState());
     }
 
     @Test
     @SuppressWarnings("unchecked")
     public void probateCaveatConversion() throws CaseTransformException {
-        Task task = Task.fromCcdCase(probateCaveat, CcdConnectorService.PROBATE_CASE_TYPE_ID_CAVEAT, null);
+        Task task = transform(probateCaveat, "probate_caveat");
         assertEquals("CaveatPersonal", task.getState());
         assertEquals("PROBATE", task.getJurisdiction());
 
         ((Map<String, Object>)probateCaveat.get("case_data")).put("applicationType", "Solicitor");
-        task = Task.fromCcdCase(probateCaveat, CcdConnectorService.PROBATE_CASE_TYPE_ID_CAVEAT, null);
+        task = transform(probateCaveat, "probate_caveat");
         assertEquals("CaveatSolicitor", task.getState());
         assertEquals("PROBATE", task.getJurisdiction());
     }
@@ -227,24 +232,24 @@ public class TaskTest {
     @Test
     @SuppressWarnings("unchecked")
     public void probateBspExceptionConversion() throws CaseTransformException {
-        Task task = Task.fromCcdCase(probateException, CcdConnectorService.PROBATE_CASE_TYPE_ID_BSP_EXCEPTION, null);
+        Task task = transform(probateException, "probate_bsp");
         assertEquals("BulkScanNewApplicationsReceivedWithoutPayments", task.getState());
         assertEquals("PROBATE", task.getJurisdiction());
 
         ((Map<String, Object>)probateException.get("case_data")).put("containsPayments", "Yes");
-        task = Task.fromCcdCase(probateException, CcdConnectorService.PROBATE_CASE_TYPE_ID_BSP_EXCEPTION, null);
+        task = transform(probateException, "probate_bsp");
         assertEquals("BulkScanNewApplicationsReceivedWithPayments", task.getState());
         assertEquals("PROBATE", task.getJurisdiction());
 
         ((Map<String, Object>)probateException.get("case_data")).put("containsPayments", "No");
         ((Map<String, Object>)probateException.get("case_data")).put("journeyClassification",
                 "SUPPLEMENTARY_EVIDENCE_WITH_OCR");
-        task = Task.fromCcdCase(probateException, CcdConnectorService.PROBATE_CASE_TYPE_ID_BSP_EXCEPTION, null);
+        task = transform(probateException, "probate_bsp");
         assertEquals("BulkScanSupplementaryEvidenceWithoutPayments", task.getState());
         assertEquals("PROBATE", task.getJurisdiction());
 
         ((Map<String, Object>)probateException.get("case_data")).put("journeyClassification", "SUPPLEMENTARY_EVIDENCE");
-        task = Task.fromCcdCase(probateException, CcdConnectorService.PROBATE_CASE_TYPE_ID_BSP_EXCEPTION, null);
+        task = transform(probateException, "probate_bsp");
         assertEquals("BulkScanSupplementaryEvidenceWithoutPayments", task.getState());
         assertEquals("PROBATE", task.getJurisdiction());
     }
@@ -252,17 +257,17 @@ public class TaskTest {
     @Test
     @SuppressWarnings("unchecked")
     public void frTask() throws CaseTransformException {
-        Task task = Task.fromCcdCase(fr, CcdConnectorService.FR_CASE_TYPE, null);
+        Task task = transform(fr, "fr");
         assertEquals("ConsentAppCreated", task.getState());
         assertEquals("DIVORCE", task.getJurisdiction());
 
         fr.put("state", "consentOrderApproved");
-        task = Task.fromCcdCase(fr, CcdConnectorService.FR_CASE_TYPE, null);
+        task = transform(fr, "fr");
         assertEquals("consentOrderApproved", task.getState());
         assertEquals("DIVORCE", task.getJurisdiction());
 
         fr.put("state", "orderMade");
-        task = Task.fromCcdCase(fr, CcdConnectorService.FR_CASE_TYPE, null);
+        task = transform(fr, "fr");
         assertEquals("consentOrderNotApproved", task.getState());
         assertEquals("DIVORCE", task.getJurisdiction());
     }
@@ -270,7 +275,7 @@ public class TaskTest {
     @Test
     @SuppressWarnings("unchecked")
     public void frExceptionTask() throws CaseTransformException {
-        Task task = Task.fromCcdCase(frException, CcdConnectorService.FR_EXCEPTION_CASE_TYPE, null);
+        Task task = transform(frException, "fr_exception");
         assertEquals("ScannedRecordReceivedFormA", task.getState());
         assertEquals("DIVORCE", task.getJurisdiction());
     }
@@ -278,12 +283,20 @@ public class TaskTest {
     @Test(expected = CaseTransformException.class)
     public void testConvertCaseToTaskWithoutId() throws CaseTransformException {
         divorce.remove("id");
-        Task.fromCcdCase(divorce, CcdConnectorService.PROBATE_CASE_TYPE_ID_GOP, null);
+        transform(divorce, "probate_gop");
     }
 
     @Test(expected = CaseTransformException.class)
     public void testConvertCaseToTaskWitWrongDateFormat() throws CaseTransformException {
         divorce.put("last_modified", "asdasd121234");
-        Task.fromCcdCase(divorce, CcdConnectorService.PROBATE_CASE_TYPE_ID_GOP, null);
+        transform(divorce, "probate_gop");
+    }
+
+    /**
+     * Transforms the case the way the poll does, with the transformer registered for the case type.
+     */
+    private static Task transform(Map<String, Object> ccdCase, String caseTypeName) throws CaseTransformException {
+        CaseType caseType = CASE_TYPES.get(caseTypeName);
+        return caseType.getTransformer().transform(ccdCase, caseType.getCaseTypeId());
     }
 }
@@ -0,0 +1,63 @@
+package uk.gov.hmcts.reform.workallocation.queue;
+
+import net.serenitybdd.junit.runners.SerenityRunner;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import uk.gov.hmcts.reform.workallocation.exception.ConnectionException;
+import uk.gov.hmcts.reform.workallocation.model.Task;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(SerenityRunner.class)
+public class ContinuousQueueConsumerTest {
+
+    private QueueConsumer<Task> queueConsumer;
+
+    private Supplier<CompletableFuture<Void>> closeReceiver;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        queueConsumer = mock(QueueConsumer.class);
+        closeReceiver = mock(Supplier.class);
+        when(closeReceiver.get()).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @Test
+    public void testStartRegistersTheReceiverAndStopClosesIt() throws Exception {
+        when(queueConsumer.registerReceiver(any())).thenReturn(closeReceiver);
+        ContinuousQueueConsumer consumer = new ContinuousQueueConsumer(queueConsumer, 1);
+
+        consumer.start();
+        Assert.assertTrue(consumer.isRunning());
+        verify(queueConsumer, timeout(1000).times(1)).registerReceiver(any());
+
+        consumer.stop();
+        Assert.assertFalse(consumer.isRunning());
+        verify(closeReceiver, times(1)).get();
+    }
+
+    @Test
+    public void testRegistrationIsRetriedWhenTheServiceBusIsDown() throws Exception {
+        when(queueConsumer.registerReceiver(any()))
+            .thenThrow(new ConnectionException("Unable to connect to Azure service bus", null))
+            .thenReturn(closeReceiver);
+        ContinuousQueueConsumer consumer = new ContinuousQueueConsumer(queueConsumer, 0);
+
+        consumer.start();
+        verify(queueConsumer, timeout(1000).times(2)).registerReceiver(any());
+
+        consumer.stop();
+        verify(closeReceiver, times(1)).get();
+    }
+}
@@ -1,6 +1,7 @@
 package uk.gov.hmcts.reform.workallocation.queue;
 
 import com.microsoft.azure.servicebus.IMessage;
+import com.microsoft.azure.servicebus.IMessageReceiver;
 import com.microsoft.azure.servicebus.IMessageHandler;
 import com.microsoft.azure.servicebus.IQueueClient;
 import com.microsoft.azure.servicebus.Message;
@@ -54,6 +55,11 @@ public class DeadQueueConsumerTest {
                     throw new RuntimeException(e);
                 }
             }
+
+            @Override
+            public IMessageReceiver getReceiver() {
+                throw new UnsupportedOperationException();
+            }
         };
 
         deadQueueConsumer = new DeadQueueConsumer(queueClientSupplier);
@@ -6,6 +6,7 @@ import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.microsoft.azure.servicebus.IMessage;
 import com.microsoft.azure.servicebus.IMessageHandler;
+import com.microsoft.azure.servicebus.IMessageReceiver;
 import com.microsoft.azure.servicebus.IQueueClient;
 import com.microsoft.azure.servicebus.MessageBody;
 import com.microsoft.azure.servicebus.MessageHandlerOptions;
@@ -15,21 +16,36 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 
+import uk.gov.hmcts.reform.workallocation.email.DigestCollector;
+import uk.gov.hmcts.reform.workallocation.email.SmtpPermits;
 import uk.gov.hmcts.reform.workallocation.model.Task;
 import uk.gov.hmcts.reform.workallocation.services.EmailSendingService;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -70,14 +86,199 @@ public class QueueConsumerTest {
                     throw new RuntimeException(e);
                 }
             }
+
+            @Override
+            public IMessageReceiver getReceiver() {
+                throw new UnsupportedOperationException();
+            }
         });
         consumer.setObjectMapper(mapper);
         consumer.setEmailSendingService(emailSendingService);
+        consumer.setSmtpPermits(new SmtpPermits(1, 60));
         DelayedExecutor executor = new DelayedExecutor(Executors.newScheduledThreadPool(1));
         consumer.registerReceiver(executor);
 
     }
 
+    @Test
+    public void testHandlersRunOnDedicatedPoolWithConfiguredConcurrency() throws Exception {
+        this.emailSendingService = mock(EmailSendingService.class);
+        IQueueClient client = mock(IQueueClient.class);
+        QueueConsumer<Task> consumer = createConsumer(client);
+        consumer.setMaxConcurrentCalls(4);
+        DelayedExecutor executor = new DelayedExecutor(Executors.newScheduledThreadPool(1));
+
+        consumer.registerReceiver(executor);
+
+        ArgumentCaptor<MessageHandlerOptions> options = ArgumentCaptor.forClass(MessageHandlerOptions.class);
+        ArgumentCaptor<ExecutorService> pool = ArgumentCaptor.forClass(ExecutorService.class);
+        verify(client).registerMessageHandler(any(IMessageHandler.class), options.capture(), pool.capture());
+        Assert.assertEquals(4, options.getValue().getMaxConcurrentCalls());
+        Assert.assertNotSame(executor.getExecutorService(), pool.getValue());
+        consumer.shutdown();
+        Assert.assertTrue(pool.getValue().isShutdown());
+    }
+
+    @Test
+    public void testMessageIsAbandonedWhenNoSmtpConnectionIsAvailable() throws Exception {
+        this.emailSendingService = mock(EmailSendingService.class);
+        IQueueClient client = mock(IQueueClient.class);
+        QueueConsumer<Task> consumer = createConsumer(client);
+        consumer.setSmtpPermits(new SmtpPermits(0, 0));
+        consumer.registerReceiver(new DelayedExecutor(Executors.newScheduledThreadPool(1)));
+
+        ArgumentCaptor<IMessageHandler> handler = ArgumentCaptor.forClass(IMessageHandler.class);
+        verify(client).registerMessageHandler(handler.capture(), any(MessageHandlerOptions.class),
+            any(ExecutorService.class));
+        IMessage message = mock(IMessage.class);
+        when(message.getContentType()).thenReturn("application/json;charset=UTF-8");
+        when(message.getLabel()).thenReturn(Task.class.getSimpleName());
+        when(message.getMessageBody()).thenReturn(createMessageBody());
+
+        CompletableFuture<Void> future = handler.getValue().onMessageAsync(message);
+
+        Assert.assertTrue(future.isCancelled());
+        verify(emailSendingService, never()).sendEmail(any(), any());
+    }
+
+    @Test
+    public void testDigestMessageIsCompletedWhenTheDigestWasSent() throws Exception {
+        this.emailSendingService = mock(EmailSendingService.class);
+        IMessageReceiver receiver = createReceiver();
+        IMessage message = createTaskMessage();
+        UUID lockToken = message.getLockToken();
+        receives(receiver, Collections.singletonList(message));
+        DigestCollector digestCollector = mock(DigestCollector.class);
+        CompletableFuture<Void> digestSent = new CompletableFuture<>();
+        when(digestCollector.add(any())).thenReturn(digestSent);
+        when(digestCollector.flushAll()).thenReturn(CompletableFuture.completedFuture(null));
+        QueueConsumer<Task> consumer = createConsumer(mock(IQueueClient.class), receiver);
+        consumer.setDigestCollector(digestCollector);
+        Supplier<CompletableFuture<Void>> close =
+            consumer.registerReceiver(new DelayedExecutor(Executors.newScheduledThreadPool(1)));
+
+        verify(digestCollector, timeout(1000)).add(any());
+        // the message stays locked until its digest was sent
+        verify(receiver, never()).completeAsync(any(UUID.class));
+        digestSent.complete(null);
+        verify(receiver, timeout(1000)).completeAsync(lockToken);
+        verify(emailSendingService, never()).sendEmail(any(), any());
+
+        close.get().get(5, TimeUnit.SECONDS);
+        InOrder inOrder = inOrder(digestCollector, receiver);
+        inOrder.verify(digestCollector).flushAll();
+        inOrder.verify(receiver).closeAsync();
+        consumer.shutdown();
+    }
+
+    @Test
+    public void testDigestMessageIsAbandonedWhenTheDigestFailed() throws Exception {
+        this.emailSendingService = mock(EmailSendingService.class);
+        IMessageReceiver receiver = createReceiver();
+        IMessage message = createTaskMessage();
+        UUID lockToken = message.getLockToken();
+        receives(receiver, Collections.singletonList(message));
+        DigestCollector digestCollector = mock(DigestCollector.class);
+        when(digestCollector.add(any())).thenReturn(
+            CompletableFuture.failedFuture(new IllegalStateException("SMTP server down")));
+        QueueConsumer<Task> consumer = createConsumer(mock(IQueueClient.class), receiver);
+        consumer.setDigestCollector(digestCollector);
+        Supplier<CompletableFuture<Void>> close =
+            consumer.registerReceiver(new DelayedExecutor(Executors.newScheduledThreadPool(1)));
+
+        verify(receiver, timeout(1000)).abandonAsync(lockToken);
+        verify(receiver, never()).completeAsync(any(UUID.class));
+        close.get().get(5, TimeUnit.SECONDS);
+        consumer.shutdown();
+    }
+
+    @Test
+    public void testDigestFillsUpToMaxTasks() throws Exception {
+        this.emailSendingService = mock(EmailSendingService.class);
+        IMessageReceiver receiver = createReceiver();
+        List<IMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            messages.add(createTaskMessage());
+        }
+        receives(receiver, messages.subList(0, 20), messages.subList(20, 40), messages.subList(40, 50));
+        DigestCollector digestCollector =
+            new DigestCollector(emailSendingService, new SmtpPermits(1, 60), "http://ccd/", 50, 3600);
+        QueueConsumer<Task> consumer = createConsumer(mock(IQueueClient.class), receiver);
+        // the concurrent calls of the message handler do not limit the digest
+        consumer.setMaxConcurrentCalls(4);
+        consumer.setDigestCollector(digestCollector);
+        Supplier<CompletableFuture<Void>> close =
+            consumer.registerReceiver(new DelayedExecutor(Executors.newScheduledThreadPool(1)));
+
+        verify(emailSendingService, timeout(5000)).sendDigest(argThat(tasks -> tasks.size() == 50), any());
+        verify(receiver, timeout(5000).times(50)).completeAsync(any(UUID.class));
+        verify(receiver, never()).abandonAsync(any(UUID.class));
+        close.get().get(5, TimeUnit.SECONDS);
+        consumer.shutdown();
+        digestCollector.shutdown();
+    }
+
+    private QueueConsumer<Task> createConsumer(IQueueClient client) {
+        return createConsumer(client, null);
+    }
+
+    private QueueConsumer<Task> createConsumer(IQueueClient client, IMessageReceiver receiver) {
+        QueueConsumer<Task> consumer = new QueueConsumer<>(Task.class);
+        consumer.setQueueClientSupplier(new CtscQueueSupplier() {
+            @Override
+            public IQueueClient getQueue() {
+                return client;
+            }
+
+            @Override
+            public IQueueClient getDeadQueue() {
+                return client;
+            }
+
+            @Override
+            public IMessageReceiver getReceiver() {
+                return receiver;
+            }
+        });
+        consumer.setObjectMapper(mapper);
+        consumer.setEmailSendingService(emailSendingService);
+        consumer.setSmtpPermits(new SmtpPermits(1, 60));
+        return consumer;
+    }
+
+    private IMessageReceiver createReceiver() {
+        IMessageReceiver receiver = mock(IMessageReceiver.class);
+        when(receiver.completeAsync(any(UUID.class))).thenReturn(CompletableFuture.completedFuture(null));
+        when(receiver.abandonAsync(any(UUID.class))).thenReturn(CompletableFuture.completedFuture(null));
+        when(receiver.closeAsync()).thenReturn(CompletableFuture.completedFuture(null));
+        return receiver;
+    }
+
+    /**
+     * The receiver returns the batches and then waits for messages that do not come.
+     */
+    @SafeVarargs
+    private static void receives(IMessageReceiver receiver, Collection<IMessage>... batches) throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        when(receiver.receiveBatch(anyInt(), any(Duration.class))).thenAnswer(invocation -> {
+            int batch = next.getAndIncrement();
+            if (batch < batches.length) {
+                return batches[batch];
+            }
+            Thread.sleep(50);
+            return null;
+        });
+    }
+
+    private IMessage createTaskMessage() throws JsonProcessingException {
+        IMessage message = mock(IMessage.class);
+        when(message.getContentType()).thenReturn("application/json;charset=UTF-8");
+        when(message.getLabel()).thenReturn(Task.class.getSimpleName());
+        when(message.getMessageBody()).thenReturn(createMessageBody());
+        when(message.getLockToken()).thenReturn(UUID.randomUUID());
+        return message;
+    }
+
     private IQueueClient getQueueClient() throws ServiceBusException, InterruptedException {
 
         IQueueClient client = mock(IQueueClient.class);
@@ -5,7 +5,6 @@ import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.microsoft.azure.servicebus.IMessage;
 import com.microsoft.azure.servicebus.IQueueClient;
-import com.microsoft.azure.servicebus.primitives.ServiceBusException;
 import net.serenitybdd.junit.runners.SerenityRunner;
 import org.junit.Assert;
 import org.junit.Before;
@@ -15,7 +14,10 @@ import org.mockito.Mockito;
 import uk.gov.hmcts.reform.workallocation.model.Task;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
@@ -28,16 +30,20 @@ public class QueueProducerTest {
     private ObjectMapper mapper;
     private QueueProducer<Task> queueProducer;
     public List<IMessage> itemsToSend = new ArrayList<>();
+    public List<Integer> batchSizes = new ArrayList<>();
     private QueueClientSupplier supplier;
+    private boolean failBatches;
 
     @Before
     public void setUp() {
         itemsToSend = new ArrayList<>();
+        batchSizes = new ArrayList<>();
+        failBatches = false;
         mapper = new ObjectMapper();
         mapper.registerModule(new Jdk8Module()).registerModule(new JavaTimeModule());
         supplier = mock(QueueClientSupplier.class);
         doAnswer(invocation -> createClient()).when(supplier).getQueue();
-        queueProducer = new QueueProducer<>(supplier, mapper, 5);
+        queueProducer = new QueueProducer<>(supplier, mapper, 5, 2, 200000);
     }
 
     @Test
@@ -46,10 +52,42 @@ public class QueueProducerTest {
         for (int i = 0; i < 5; i++) {
             tasks.add(Task.builder().id(Integer.toString(i)).build());
         }
-        queueProducer.placeItemsInQueue(tasks, Task::getId);
+        List<BatchSendResult> results = queueProducer.placeItemsInQueue(tasks, Task::getId);
         Assert.assertEquals(5, itemsToSend.size());
         Assert.assertEquals("0", itemsToSend.get(0).getMessageId());
         Assert.assertEquals("Task", itemsToSend.get(0).getLabel());
+        Assert.assertEquals(Arrays.asList(2, 2, 1), batchSizes);
+        Assert.assertEquals(3, results.size());
+        Assert.assertTrue(results.stream().allMatch(BatchSendResult::isSuccess));
+        Assert.assertEquals(Arrays.asList("0", "1"), results.get(0).getMessageIds());
+        Assert.assertEquals(Arrays.asList(2, 3), results.get(1).getPositions());
+        verify(supplier, Mockito.times(1)).getQueue();
+    }
+
+    @Test
+    public void testBatchesAreLimitedBySize() {
+        queueProducer = new QueueProducer<>(supplier, mapper, 5, 100, 1000);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            tasks.add(Task.builder().id(Integer.toString(i)).build());
+        }
+        queueProducer.placeItemsInQueue(tasks, Task::getId);
+        Assert.assertEquals(5, itemsToSend.size());
+        Assert.assertTrue(batchSizes.size() > 1);
+    }
+
+    @Test
+    public void testFailedBatchesAreReported() {
+        failBatches = true;
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            tasks.add(Task.builder().id(Integer.toString(i)).build());
+        }
+        List<BatchSendResult> results = queueProducer.placeItemsInQueue(tasks, Task::getId);
+        Assert.assertEquals(2, results.size());
+        Assert.assertFalse(results.get(0).isSuccess());
+        Assert.assertEquals(Arrays.asList("2"), results.get(1).getMessageIds());
+        Assert.assertEquals(Arrays.asList(2), results.get(1).getPositions());
     }
 
     @Test
@@ -59,21 +97,20 @@ public class QueueProducerTest {
         verify(supplier, Mockito.times(0)).getQueue();
     }
 
-    private IQueueClient createClient() throws ServiceBusException, InterruptedException {
+    private IQueueClient createClient() {
         IQueueClient client = mock(IQueueClient.class);
         doAnswer(invocation -> {
-            IMessage message = invocation.getArgument(0);
-            itemsToSend.add(message);
-            return null;
-        }).when(client).send(any(IMessage.class));
+            Collection<IMessage> messages = invocation.getArgument(0);
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            if (failBatches) {
+                future.completeExceptionally(new RuntimeException("Something went wrong"));
+            } else {
+                itemsToSend.addAll(messages);
+                batchSizes.add(messages.size());
+                future.complete(null);
+            }
+            return future;
+        }).when(client).sendBatchAsync(any());
         return client;
     }
-
-    static class SendClient {
-        public List<IMessage> itemsToSend = new ArrayList<>();
-
-        public void send(IMessage message) {
-            itemsToSend.add(message);
-        }
-    }
 }
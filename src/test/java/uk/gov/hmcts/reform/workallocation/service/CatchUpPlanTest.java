@@ -0,0 +1,59 @@
+package uk.gov.hmcts.reform.workallocation.service;
+
+import net.serenitybdd.junit.runners.SerenityRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import uk.gov.hmcts.reform.workallocation.services.CatchUpPlan;
+import uk.gov.hmcts.reform.workallocation.services.CatchUpPlanner;
+
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SerenityRunner.class)
+public class CatchUpPlanTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2019, 9, 25, 12, 0, 0, 0);
+
+    private final CatchUpPlanner planner = new CatchUpPlanner(60, 15, 240);
+
+    @Test
+    public void testShortRangeIsASingleWindow() {
+        CatchUpPlan plan = planner.plan(START, START.plusMinutes(30));
+        assertWindow(plan.next(), START, START.plusMinutes(30));
+        assertFalse(plan.hasNext());
+    }
+
+    @Test
+    public void testWindowShrinksWhenTheResultIsLargerThanAPage() {
+        CatchUpPlan plan = planner.plan(START, START.plusDays(1));
+        assertWindow(plan.next(), START, START.plusMinutes(60));
+        plan.feedback(2500, 1000);
+        assertWindow(plan.next(), START.plusMinutes(60), START.plusMinutes(90));
+        plan.feedback(1500, 1000);
+        assertWindow(plan.next(), START.plusMinutes(90), START.plusMinutes(105));
+        plan.feedback(1500, 1000);
+        assertWindow(plan.next(), START.plusMinutes(105), START.plusMinutes(120));
+    }
+
+    @Test
+    public void testWindowGrowsWhenTheResultIsSparse() {
+        CatchUpPlan plan = planner.plan(START, START.plusMinutes(500));
+        assertWindow(plan.next(), START, START.plusMinutes(60));
+        plan.feedback(10, 1000);
+        assertWindow(plan.next(), START.plusMinutes(60), START.plusMinutes(180));
+        plan.feedback(10, 1000);
+        assertWindow(plan.next(), START.plusMinutes(180), START.plusMinutes(420));
+        plan.feedback(500, 1000);
+        assertTrue(plan.hasNext());
+        assertWindow(plan.next(), START.plusMinutes(420), START.plusMinutes(500));
+        assertFalse(plan.hasNext());
+    }
+
+    private void assertWindow(CatchUpPlan.Window window, LocalDateTime from, LocalDateTime to) {
+        assertEquals(from, window.getFrom());
+        assertEquals(to, window.getTo());
+    }
+}
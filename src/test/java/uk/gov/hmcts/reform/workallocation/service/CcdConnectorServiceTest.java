@@ -10,16 +10,25 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.test.util.ReflectionTestUtils;
 import uk.gov.hmcts.reform.workallocation.ccd.CcdClient;
+import uk.gov.hmcts.reform.workallocation.ccd.CcdQueryRegistry;
+import uk.gov.hmcts.reform.workallocation.ccd.FeignCcdSearchClient;
+import uk.gov.hmcts.reform.workallocation.config.CaseTypeConfiguration;
 import uk.gov.hmcts.reform.workallocation.exception.CcdConnectionException;
+import uk.gov.hmcts.reform.workallocation.services.CaseTypeRegistry;
 import uk.gov.hmcts.reform.workallocation.services.CcdConnectorService;
+import uk.gov.hmcts.reform.workallocation.services.CcdSearchHedger;
+import uk.gov.hmcts.reform.workallocation.services.PollDeadline;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(SerenityRunner.class)
@@ -30,61 +39,58 @@ public class CcdConnectorServiceTest {
 
     private CcdConnectorService ccdConnectorService;
 
+    private CaseTypeRegistry caseTypes;
+
     @Before
-    public void setUp() {
+    public void setUp() throws IOException {
         MockitoAnnotations.openMocks(this);
-        ccdConnectorService = new CcdConnectorService(ccdClient);
+        ccdConnectorService = new CcdConnectorService(new FeignCcdSearchClient(ccdClient),
+            new CcdQueryRegistry("classpath*:ccd/queries/*.json"),
+            new CcdSearchHedger(60, true, 2000, 200, 4, 3, 10, 100));
         ReflectionTestUtils.setField(ccdConnectorService, "ctids", "DIVORCE");
         ReflectionTestUtils.setField(ccdConnectorService, "dryRun", true);
+        caseTypes = new CaseTypeRegistry(CaseTypeConfiguration.defaultCaseTypes(), name -> true);
     }
 
     @Test
     public void testDryDivorceRun() throws CcdConnectionException {
-        Map<String, Object> result = ccdConnectorService.searchDivorceCases("", "", "", "",
-            CcdConnectorService.CASE_TYPE_ID_DIVORCE);
+        Map<String, Object> result = ccdConnectorService.searchCases("", "", "", "", caseTypes.get("divorce"));
         assertEquals(0, result.get("total"));
         assertTrue(((List)result.get("cases")).isEmpty());
 
         ReflectionTestUtils.setField(ccdConnectorService, "ctids", "DIVORCE_ExceptionRecord");
-        result = ccdConnectorService.searchDivorceCases("", "", "", "",
-            CcdConnectorService.CASE_TYPE_ID_DIVORCE_EXCEPTION);
+        result = ccdConnectorService.searchCases("", "", "", "", caseTypes.get("divorce_exception"));
         assertEquals(0, result.get("total"));
         assertTrue(((List)result.get("cases")).isEmpty());
 
         ReflectionTestUtils.setField(ccdConnectorService, "ctids", "DIVORCE");
-        result = ccdConnectorService.searchDivorceEvidenceHandledCases("", "", "", "",
-            CcdConnectorService.CASE_TYPE_ID_DIVORCE);
+        result = ccdConnectorService.searchCases("", "", "", "", caseTypes.get("divorce_evidence"));
         assertEquals(0, result.get("total"));
         assertTrue(((List)result.get("cases")).isEmpty());
     }
 
     @Test
     public void testDryProbateGoPRun() throws CcdConnectionException {
-        Map<String, Object> result = ccdConnectorService.findProbateCases("", "", "", "",
-            CcdConnectorService.PROBATE_CASE_TYPE_ID_GOP);
+        Map<String, Object> result = ccdConnectorService.searchCases("", "", "", "", caseTypes.get("probate_gop"));
         assertEquals(0, result.get("total"));
         assertTrue(((List)result.get("cases")).isEmpty());
 
-        result = ccdConnectorService.findProbateCases("", "", "", "",
-                CcdConnectorService.PROBATE_CASE_TYPE_ID_CAVEAT);
+        result = ccdConnectorService.searchCases("", "", "", "", caseTypes.get("probate_caveat"));
         assertEquals(0, result.get("total"));
         assertTrue(((List)result.get("cases")).isEmpty());
 
-        result = ccdConnectorService.findProbateCases("", "", "", "",
-                CcdConnectorService.PROBATE_CASE_TYPE_ID_BSP_EXCEPTION);
+        result = ccdConnectorService.searchCases("", "", "", "", caseTypes.get("probate_bsp"));
         assertEquals(0, result.get("total"));
         assertTrue(((List)result.get("cases")).isEmpty());
     }
 
     @Test
     public void testDryFrRun() throws CcdConnectionException {
-        Map<String, Object> result = ccdConnectorService.findFinancialRemedyCases("", "", "", "",
-            CcdConnectorService.FR_CASE_TYPE);
+        Map<String, Object> result = ccdConnectorService.searchCases("", "", "", "", caseTypes.get("fr"));
         assertEquals(0, result.get("total"));
         assertTrue(((List)result.get("cases")).isEmpty());
 
-        result = ccdConnectorService.findFinancialRemedyCases("", "", "", "",
-                CcdConnectorService.FR_EXCEPTION_CASE_TYPE);
+        result = ccdConnectorService.searchCases("", "", "", "", caseTypes.get("fr_exception"));
         assertEquals(0, result.get("total"));
         assertTrue(((List)result.get("cases")).isEmpty());
     }
@@ -93,22 +99,19 @@ public class CcdConnectorServiceTest {
     public void divorceNormalRun() throws CcdConnectionException, IOException {
         ReflectionTestUtils.setField(ccdConnectorService, "dryRun", false);
         when(ccdClient.searchCases(any(), any(), any(), any())).thenReturn(caseSearchResult());
-        Map<String, Object> result = ccdConnectorService.searchDivorceCases("", "", "", "",
-            CcdConnectorService.CASE_TYPE_ID_DIVORCE);
+        Map<String, Object> result = ccdConnectorService.searchCases("", "", "", "", caseTypes.get("divorce"));
         assertEquals(1, result.get("total"));
         Assert.assertFalse(((List)result.get("cases")).isEmpty());
 
         ReflectionTestUtils.setField(ccdConnectorService, "ctids", "DIVORCE_ExceptionRecord");
         when(ccdClient.searchCases(any(), any(), any(), any())).thenReturn(exceptionCaseSearchResult());
-        result = ccdConnectorService.searchDivorceCases("", "", "", "",
-            CcdConnectorService.CASE_TYPE_ID_DIVORCE_EXCEPTION);
+        result = ccdConnectorService.searchCases("", "", "", "", caseTypes.get("divorce_exception"));
         assertEquals(1, result.get("total"));
         Assert.assertFalse(((List)result.get("cases")).isEmpty());
 
         ReflectionTestUtils.setField(ccdConnectorService, "ctids", "DIVORCE");
         when(ccdClient.searchCases(any(), any(), any(), any())).thenReturn(evidenceHandledCaseSearchResult());
-        result = ccdConnectorService.searchDivorceEvidenceHandledCases("", "", "", "",
-            CcdConnectorService.CASE_TYPE_ID_DIVORCE);
+        result = ccdConnectorService.searchCases("", "", "", "", caseTypes.get("divorce_evidence"));
         assertEquals(1, result.get("total"));
         Assert.assertFalse(((List)result.get("cases")).isEmpty());
     }
@@ -117,24 +120,20 @@ public class CcdConnectorServiceTest {
     public void probateNormalRun() throws CcdConnectionException, IOException {
         ReflectionTestUtils.setField(ccdConnectorService, "ctids", "GrantOfRepresentation");
         ReflectionTestUtils.setField(ccdConnectorService, "dryRun", false);
-        ReflectionTestUtils.setField(ccdConnectorService, "enableProbate", true);
         when(ccdClient.searchCases(any(), any(), any(), any())).thenReturn(probateSearchResult());
-        Map<String, Object> result = ccdConnectorService.findProbateCases("", "", "", "",
-            CcdConnectorService.PROBATE_CASE_TYPE_ID_GOP);
+        Map<String, Object> result = ccdConnectorService.searchCases("", "", "", "", caseTypes.get("probate_gop"));
         assertEquals(1, result.get("total"));
         Assert.assertFalse(((List)result.get("cases")).isEmpty());
 
         ReflectionTestUtils.setField(ccdConnectorService, "ctids", "Caveat");
         when(ccdClient.searchCases(any(), any(), any(), any())).thenReturn(probateCaveatSearchResult());
-        result = ccdConnectorService.findProbateCases("", "", "", "",
-            CcdConnectorService.PROBATE_CASE_TYPE_ID_CAVEAT);
+        result = ccdConnectorService.searchCases("", "", "", "", caseTypes.get("probate_caveat"));
         assertEquals(1, result.get("total"));
         Assert.assertFalse(((List)result.get("cases")).isEmpty());
 
         ReflectionTestUtils.setField(ccdConnectorService, "ctids", "PROBATE_ExceptionRecord");
         when(ccdClient.searchCases(any(), any(), any(), any())).thenReturn(probateExpSearchResult());
-        result = ccdConnectorService.findProbateCases("", "", "", "",
-            CcdConnectorService.PROBATE_CASE_TYPE_ID_BSP_EXCEPTION);
+        result = ccdConnectorService.searchCases("", "", "", "", caseTypes.get("probate_bsp"));
         assertEquals(1, result.get("total"));
         Assert.assertFalse(((List)result.get("cases")).isEmpty());
     }
@@ -143,21 +142,38 @@ public class CcdConnectorServiceTest {
     public void frNormalRun() throws CcdConnectionException, IOException {
         ReflectionTestUtils.setField(ccdConnectorService, "ctids", "FinancialRemedyMVP2");
         ReflectionTestUtils.setField(ccdConnectorService, "dryRun", false);
-        ReflectionTestUtils.setField(ccdConnectorService, "enableProbate", true);
         when(ccdClient.searchCases(any(), any(), any(), any())).thenReturn(frSearchResult());
-        Map<String, Object> result = ccdConnectorService.findFinancialRemedyCases("", "", "", "",
-            CcdConnectorService.FR_CASE_TYPE);
+        Map<String, Object> result = ccdConnectorService.searchCases("", "", "", "", caseTypes.get("fr"));
         assertEquals(1, result.get("total"));
         Assert.assertFalse(((List)result.get("cases")).isEmpty());
 
         ReflectionTestUtils.setField(ccdConnectorService, "ctids", "FINREM_ExceptionRecord");
         when(ccdClient.searchCases(any(), any(), any(), any())).thenReturn(frExpSearchResult());
-        result = ccdConnectorService.findProbateCases("", "", "", "",
-            CcdConnectorService.FR_EXCEPTION_CASE_TYPE);
+        result = ccdConnectorService.searchCases("", "", "", "", caseTypes.get("fr_exception"));
         assertEquals(1, result.get("total"));
         Assert.assertFalse(((List)result.get("cases")).isEmpty());
     }
 
+    @Test(expected = CcdConnectionException.class)
+    public void failedSearchThrowsConnectionException() throws CcdConnectionException {
+        ReflectionTestUtils.setField(ccdConnectorService, "dryRun", false);
+        when(ccdClient.searchCases(any(), any(), any(), any())).thenThrow(new IllegalStateException("refused"));
+        ccdConnectorService.searchCases("", "", "", "", caseTypes.get("divorce"));
+    }
+
+    @Test
+    public void failedSearchIsRetriedWithinTheDeadline() throws CcdConnectionException, IOException {
+        ReflectionTestUtils.setField(ccdConnectorService, "dryRun", false);
+        when(ccdClient.searchCases(any(), any(), any(), any()))
+            .thenThrow(new IllegalStateException("refused"))
+            .thenReturn(caseSearchResult());
+        Map<String, Object> result = ccdConnectorService.searchCases("", "", "", "", caseTypes.get("divorce"), null,
+            PollDeadline.after(Duration.ofSeconds(30)));
+        assertEquals(1, result.get("total"));
+        assertEquals("DIVORCE", result.get("case_type_id"));
+        verify(ccdClient, times(2)).searchCases(any(), any(), any(), any());
+    }
+
     //CHECKSTYLE:OFF
     @SuppressWarnings("unchecked")
     private Map<String, Object> caseSearchResult() throws IOException {
@@ -3,33 +3,57 @@ package uk.gov.hmcts.reform.workallocation.service;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.microsoft.applicationinsights.TelemetryClient;
 import net.serenitybdd.junit.runners.SerenityRunner;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import uk.gov.hmcts.reform.workallocation.config.CaseTypeConfiguration;
 import uk.gov.hmcts.reform.workallocation.exception.CcdConnectionException;
+import uk.gov.hmcts.reform.workallocation.exception.LeaseLostException;
 import uk.gov.hmcts.reform.workallocation.idam.IdamConnectionException;
 import uk.gov.hmcts.reform.workallocation.idam.IdamService;
 import uk.gov.hmcts.reform.workallocation.model.Task;
 import uk.gov.hmcts.reform.workallocation.queue.DeadQueueConsumer;
 import uk.gov.hmcts.reform.workallocation.queue.QueueConsumer;
-import uk.gov.hmcts.reform.workallocation.queue.QueueProducer;
+import uk.gov.hmcts.reform.workallocation.services.CaseType;
+import uk.gov.hmcts.reform.workallocation.services.CaseTypeRegistry;
+import uk.gov.hmcts.reform.workallocation.services.CatchUpPlanner;
 import uk.gov.hmcts.reform.workallocation.services.CcdConnectorService;
 import uk.gov.hmcts.reform.workallocation.services.CcdPollingService;
+import uk.gov.hmcts.reform.workallocation.services.CcdSearchExecutor;
+import uk.gov.hmcts.reform.workallocation.services.EnqueuedCaseService;
 import uk.gov.hmcts.reform.workallocation.services.LastRunTimeService;
+import uk.gov.hmcts.reform.workallocation.services.PollLease;
+import uk.gov.hmcts.reform.workallocation.services.PollLeaseService;
+import uk.gov.hmcts.reform.workallocation.services.PollMembershipService;
+import uk.gov.hmcts.reform.workallocation.services.SearchAfter;
+import uk.gov.hmcts.reform.workallocation.services.TaskOutboxService;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -37,6 +61,10 @@ import static org.mockito.Mockito.when;
 @RunWith(SerenityRunner.class)
 public class CcdPollingServiceTest {
 
+    private static final long TEN_YEARS = 60L * 24 * 365 * 10;
+
+    private static final PollLease LEASE = new PollLease(PollLeaseService.CCD_POLL, "test", 7);
+
     private CcdPollingService ccdPollingService;
 
     @Mock
@@ -46,7 +74,16 @@ public class CcdPollingServiceTest {
     private LastRunTimeService lastRunTimeService;
 
     @Mock
-    private QueueProducer<Task> queueProducer;
+    private PollLeaseService pollLeaseService;
+
+    @Mock
+    private PollMembershipService pollMembershipService;
+
+    @Mock
+    private TaskOutboxService taskOutboxService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
     @Mock
     private QueueConsumer<Task> queueConsumer;
@@ -60,57 +97,67 @@ public class CcdPollingServiceTest {
     @Mock
     private CcdConnectorService ccdConnectorService;
 
+    @Mock
+    private EnqueuedCaseService enqueuedCaseService;
+
+    private final CaseTypeRegistry caseTypeRegistry =
+        new CaseTypeRegistry(CaseTypeConfiguration.defaultCaseTypes(), name -> true);
+
     @Before
     public void setup() throws IOException, IdamConnectionException, CcdConnectionException {
         MockitoAnnotations.openMocks(this);
-        ccdPollingService = new CcdPollingService(idamService, ccdConnectorService, lastRunTimeService,
-            30, 5, queueProducer,
-            queueConsumer, deadQueueConsumer, telemetryClient);
+        ccdPollingService = new CcdPollingService(idamService, ccdConnectorService, caseTypeRegistry,
+            new CcdSearchExecutor(false, 1, 60), new CatchUpPlanner(TEN_YEARS, 5, TEN_YEARS), lastRunTimeService,
+            pollLeaseService, pollMembershipService, enqueuedCaseService, taskOutboxService, transactionManager, 30, 5,
+            240, queueConsumer, deadQueueConsumer, "window", telemetryClient);
 
         when(deadQueueConsumer.runConsumer(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
         when(queueConsumer.runConsumer(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
 
         Map<String, Object> divorceResponse = divorceSearchResult();
         divorceResponse.put("case_type_id", "DIVORCE");
-        when(ccdConnectorService.searchDivorceCases(anyString(), anyString(), anyString(), anyString(), eq("DIVORCE")))
-            .thenReturn(divorceResponse);
+        when(ccdConnectorService.searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("divorce"), any(), any())).thenReturn(divorceResponse);
 
         Map<String, Object> divorceExceptionResponse = divorceExceptionSearchResult();
         divorceExceptionResponse.put("case_type_id", "DIVORCE_ExceptionRecord");
-        when(ccdConnectorService.searchDivorceCases(anyString(), anyString(), anyString(), anyString(),
-                eq("DIVORCE_ExceptionRecord"))).thenReturn(divorceExceptionResponse);
+        when(ccdConnectorService.searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("divorce_exception"), any(), any())).thenReturn(divorceExceptionResponse);
 
         Map<String, Object> divorceEvidenceHandResponse = divorceEvidenceHandSearchResult();
         divorceEvidenceHandResponse.put("case_type_id", "DIVORCE");
-        divorceEvidenceHandResponse.put("EVIDENCE_FLOW", "evidenceHandled");
-        when(ccdConnectorService.searchDivorceEvidenceHandledCases(anyString(), anyString(), anyString(), anyString(),
-                eq("DIVORCE"))).thenReturn(divorceEvidenceHandResponse);
+        when(ccdConnectorService.searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("divorce_evidence"), any(), any())).thenReturn(divorceEvidenceHandResponse);
 
         Map<String, Object> probateResponse = probateSearchResult();
         probateResponse.put("case_type_id", "GrantOfRepresentation");
-        when(ccdConnectorService.findProbateCases(anyString(), anyString(), anyString(), anyString(),
-                eq("GrantOfRepresentation"))).thenReturn(probateResponse);
+        when(ccdConnectorService.searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("probate_gop"), any(), any())).thenReturn(probateResponse);
 
         Map<String, Object> probateCaveatResponse = probateCaveatSearchResult();
         probateCaveatResponse.put("case_type_id", "Caveat");
-        when(ccdConnectorService.findProbateCases(anyString(), anyString(), anyString(), anyString(),
-                eq("Caveat"))).thenReturn(probateCaveatResponse);
+        when(ccdConnectorService.searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("probate_caveat"), any(), any())).thenReturn(probateCaveatResponse);
 
         Map<String, Object> probateExpResponse = probateExpSearchResult();
         probateExpResponse.put("case_type_id", "PROBATE_ExceptionRecord");
-        when(ccdConnectorService.findProbateCases(anyString(), anyString(), anyString(), anyString(),
-                eq("PROBATE_ExceptionRecord"))).thenReturn(probateExpResponse);
+        when(ccdConnectorService.searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("probate_bsp"), any(), any())).thenReturn(probateExpResponse);
 
         Map<String, Object> frResponse = frSearchResult();
         frResponse.put("case_type_id", "FinancialRemedyMVP2");
-        when(ccdConnectorService.findFinancialRemedyCases(anyString(), anyString(), anyString(), anyString(),
-                eq("FinancialRemedyMVP2"))).thenReturn(frResponse);
+        when(ccdConnectorService.searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("fr"), any(), any())).thenReturn(frResponse);
 
         Map<String, Object> frExpResponse = frExpSearchResult();
         frExpResponse.put("case_type_id", "FINREM_ExceptionRecord");
-        when(ccdConnectorService.findFinancialRemedyCases(anyString(), anyString(), anyString(), anyString(),
-                eq("FINREM_ExceptionRecord"))).thenReturn(frExpResponse);
+        when(ccdConnectorService.searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("fr_exception"), any(), any())).thenReturn(frExpResponse);
 
+        when(ccdConnectorService.getPageSize()).thenReturn(1000);
+        when(enqueuedCaseService.filterUnchanged(anyString(), any()))
+            .thenAnswer(invocation -> invocation.getArgument(1));
+        when(pollLeaseService.acquire(PollLeaseService.CCD_POLL)).thenReturn(Optional.of(LEASE));
         when(idamService.generateServiceAuthorization()).thenReturn("service_token");
         when(idamService.getIdamOauth2Token()).thenReturn("idam_token");
         when(lastRunTimeService.getMinDate()).thenReturn(LocalDateTime.of(2019, 9, 20, 12, 0, 0, 0));
@@ -130,16 +177,9 @@ public class CcdPollingServiceTest {
         Task task6 = getProbateExceptionTask();
         Task task7 = getFrTask();
         Task task8 = getFrExceptionTask();
-        verify(ccdConnectorService, times(2))
-            .searchDivorceCases(eq("idam_token"), eq("service_token"), eq(queryFromDate), anyString(), anyString());
-        verify(ccdConnectorService, times(1)).searchDivorceEvidenceHandledCases(eq("idam_token"),
-                eq("service_token"), eq(queryFromDate), anyString(), anyString());
-        verify(ccdConnectorService, times(3)).findProbateCases(eq("idam_token"),
-                eq("service_token"), eq(queryFromDate), anyString(), anyString());
-        verify(ccdConnectorService, times(2)).findFinancialRemedyCases(eq("idam_token"),
-                eq("service_token"), eq(queryFromDate), anyString(), anyString());
-        verify(queueProducer, times(1)).placeItemsInQueue(eq(Arrays.asList(task1, task2, task3, task4,
-                task5, task6, task7, task8)), any());
+        verify(ccdConnectorService, times(8)).searchCases(eq("idam_token"), eq("service_token"), eq(queryFromDate),
+            anyString(), any(), any(), any());
+        verifyTasksQueued(task1, task2, task3, task4, task5, task6, task7, task8);
         verify(lastRunTimeService, times(1)).updateLastRuntime(any(LocalDateTime.class));
     }
 
@@ -157,16 +197,9 @@ public class CcdPollingServiceTest {
         Task task6 = getProbateExceptionTask();
         Task task7 = getFrTask();
         Task task8 = getFrExceptionTask();
-        verify(ccdConnectorService, times(2))
-            .searchDivorceCases(eq("idam_token"), eq("service_token"), eq(queryDate), anyString(), anyString());
-        verify(ccdConnectorService, times(1)).searchDivorceEvidenceHandledCases(eq("idam_token"),
-                eq("service_token"), eq(queryDate), anyString(), anyString());
-        verify(ccdConnectorService, times(3)).findProbateCases(eq("idam_token"),
-                eq("service_token"), eq(queryDate), anyString(), anyString());
-        verify(ccdConnectorService, times(2)).findFinancialRemedyCases(eq("idam_token"),
-                eq("service_token"), eq(queryDate), anyString(), anyString());
-        verify(queueProducer, times(1))
-                .placeItemsInQueue(eq(Arrays.asList(task1, task2, task3, task4, task5, task6, task7, task8)), any());
+        verify(ccdConnectorService, times(8)).searchCases(eq("idam_token"), eq("service_token"), eq(queryDate),
+            anyString(), any(), any(), any());
+        verifyTasksQueued(task1, task2, task3, task4, task5, task6, task7, task8);
         verify(lastRunTimeService, times(1)).updateLastRuntime(any(LocalDateTime.class));
     }
 
@@ -186,17 +219,9 @@ public class CcdPollingServiceTest {
         Task task6 = getProbateExceptionTask();
         Task task7 = getFrTask();
         Task task8 = getFrExceptionTask();
-        verify(ccdConnectorService, times(2))
-            .searchDivorceCases(eq("idam_token"), eq("service_token"), eq("2019-09-25T11:55"),
-                    anyString(), anyString());
-        verify(ccdConnectorService, times(1)).searchDivorceEvidenceHandledCases(eq("idam_token"),
-                eq("service_token"), eq("2019-09-25T11:55"), anyString(), anyString());
-        verify(ccdConnectorService, times(3)).findProbateCases(eq("idam_token"),
-                eq("service_token"), eq("2019-09-25T11:55"), anyString(), anyString());
-        verify(ccdConnectorService, times(2)).findFinancialRemedyCases(eq("idam_token"),
-                eq("service_token"), eq("2019-09-25T11:55"), anyString(), anyString());
-        verify(queueProducer, times(1))
-                .placeItemsInQueue(eq(Arrays.asList(task1, task2, task3, task4, task5, task6, task7, task8)), any());
+        verify(ccdConnectorService, times(8)).searchCases(eq("idam_token"), eq("service_token"), eq("2019-09-25T11:55"),
+            anyString(), any(), any(), any());
+        verifyTasksQueued(task1, task2, task3, task4, task5, task6, task7, task8);
         verify(lastRunTimeService, times(1)).updateLastRuntime(any(LocalDateTime.class));
     }
 
@@ -216,17 +241,9 @@ public class CcdPollingServiceTest {
         Task task6 = getProbateExceptionTask();
         Task task7 = getFrTask();
         Task task8 = getFrExceptionTask();
-        verify(ccdConnectorService, times(2))
-            .searchDivorceCases(eq("idam_token"), eq("service_token"), eq("2019-09-25T11:55"),
-                    anyString(), anyString());
-        verify(ccdConnectorService, times(1)).searchDivorceEvidenceHandledCases(eq("idam_token"),
-                eq("service_token"), eq("2019-09-25T11:55"), anyString(), anyString());
-        verify(ccdConnectorService, times(3)).findProbateCases(eq("idam_token"),
-                eq("service_token"), eq("2019-09-25T11:55"), anyString(), anyString());
-        verify(ccdConnectorService, times(2)).findFinancialRemedyCases(eq("idam_token"),
-                eq("service_token"), eq("2019-09-25T11:55"), anyString(), anyString());
-        verify(queueProducer, times(1))
-                .placeItemsInQueue(eq(Arrays.asList(task1, task2, task3, task4, task5, task6, task7, task8)), any());
+        verify(ccdConnectorService, times(8)).searchCases(eq("idam_token"), eq("service_token"), eq("2019-09-25T11:55"),
+            anyString(), any(), any(), any());
+        verifyTasksQueued(task1, task2, task3, task4, task5, task6, task7, task8);
         verify(lastRunTimeService, times(1)).updateLastRuntime(any(LocalDateTime.class));
     }
 
@@ -238,25 +255,212 @@ public class CcdPollingServiceTest {
         List<Object> cases = (List<Object>) searchResult.get("cases");
         Map<String, Object> ccdCase = (Map<String, Object>) cases.get(0);
         ccdCase.remove("id");
-        when(ccdConnectorService.searchDivorceCases(anyString(), anyString(), anyString(), anyString(), anyString()))
-            .thenReturn(searchResult);
-        searchResult.put("EVIDENCE_FLOW", "evidenceHandled");
-        when(ccdConnectorService.searchDivorceEvidenceHandledCases(anyString(), anyString(), anyString(),
-                anyString(), anyString())).thenReturn(searchResult);
+        when(ccdConnectorService.searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("divorce"), any(), any())).thenReturn(searchResult);
+        when(ccdConnectorService.searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("divorce_exception"), any(), any())).thenReturn(searchResult);
+        when(ccdConnectorService.searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("divorce_evidence"), any(), any())).thenReturn(searchResult);
         ccdPollingService.pollCcdEndpoint();
         Task task1 = getProbateTask();
         Task task2 = getProbateCaveatTask();
         Task task3 = getProbateExceptionTask();
         Task task4 = getFrTask();
         Task task5 = getFrExceptionTask();
-        verify(ccdConnectorService, times(2))
-            .searchDivorceCases(eq("idam_token"), eq("service_token"), eq("2019-09-20T11:55"),
-                    anyString(), anyString());
-        verify(ccdConnectorService, times(3)).findProbateCases(eq("idam_token"),
-                eq("service_token"), eq("2019-09-20T11:55"), anyString(), anyString());
-        verify(ccdConnectorService, times(2)).findFinancialRemedyCases(eq("idam_token"),
-                eq("service_token"), eq("2019-09-20T11:55"), anyString(), anyString());
-        verify(queueProducer, times(1)).placeItemsInQueue(eq(Arrays.asList(task1, task2, task3, task4, task5)), any());
+        verify(ccdConnectorService, times(8)).searchCases(eq("idam_token"), eq("service_token"), eq("2019-09-20T11:55"),
+            anyString(), any(), any(), any());
+        verifyTasksQueued(task1, task2, task3, task4, task5);
+        verify(lastRunTimeService, times(1)).updateLastRuntime(any(LocalDateTime.class));
+    }
+
+    @Test
+    public void testPollccdEndpointInParallelWhenOneSearchFails()
+            throws CcdConnectionException, IdamConnectionException {
+        ccdPollingService = new CcdPollingService(idamService, ccdConnectorService, caseTypeRegistry,
+            new CcdSearchExecutor(true, 4, 60), new CatchUpPlanner(TEN_YEARS, 5, TEN_YEARS), lastRunTimeService,
+            pollLeaseService, pollMembershipService, enqueuedCaseService, taskOutboxService, transactionManager, 30, 5,
+            240, queueConsumer, deadQueueConsumer, "window", telemetryClient);
+        LocalDateTime lastRunTime = LocalDateTime.of(2019, 9, 25, 12, 0, 0, 0);
+        when(lastRunTimeService.getLastRunTime()).thenReturn(Optional.of(lastRunTime));
+        when(ccdConnectorService.searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("probate_caveat"), any(), any()))
+            .thenThrow(new CcdConnectionException("Failed to connect ccd.", null));
+
+        ccdPollingService.pollCcdEndpoint();
+        verifyTasksQueued(getDivorceTask(), getDivorceExceptionTask(), getDivorceEvidenceHandledTask(),
+            getProbateTask(), getProbateExceptionTask(), getFrTask(), getFrExceptionTask());
+        verify(lastRunTimeService, times(1)).saveLastRunTime("probate_caveat", lastRunTime);
+        verify(lastRunTimeService, never()).saveLastRunTime(eq("probate_caveat"), argThat(lastRunTime::isBefore));
+        verify(telemetryClient, times(1)).trackEvent("work-allocation partial polling");
+        verify(lastRunTimeService, times(1)).updateLastRuntime(any(LocalDateTime.class));
+    }
+
+    @Test
+    public void testSerialPollContinuesWithTheNextCaseTypeWhenOneFails()
+            throws CcdConnectionException, IdamConnectionException {
+        LocalDateTime lastRunTime = LocalDateTime.of(2019, 9, 25, 12, 0, 0, 0);
+        when(lastRunTimeService.getLastRunTime()).thenReturn(Optional.of(lastRunTime));
+        when(ccdConnectorService.searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("divorce"), any(), any()))
+            .thenThrow(new CcdConnectionException("Failed to connect ccd.", null));
+
+        ccdPollingService.pollCcdEndpoint();
+        verifyTasksQueued(getDivorceExceptionTask(), getDivorceEvidenceHandledTask(), getProbateTask(),
+            getProbateCaveatTask(), getProbateExceptionTask(), getFrTask(), getFrExceptionTask());
+        verify(lastRunTimeService, never()).saveLastRunTime(eq("divorce"), argThat(lastRunTime::isBefore));
+        verify(telemetryClient, times(1)).trackEvent("work-allocation partial polling");
+        verify(lastRunTimeService, times(1)).updateLastRuntime(any(LocalDateTime.class));
+    }
+
+    @Test
+    public void testRejectedIdamTokenIsReplacedAndTheSearchRetriedOnce()
+            throws CcdConnectionException, IdamConnectionException {
+        when(lastRunTimeService.getLastRunTime()).thenReturn(Optional.of(LocalDateTime.of(2019, 9, 25, 12, 0, 0, 0)));
+        when(idamService.getIdamOauth2Token()).thenReturn("idam_token", "new_idam_token");
+        when(ccdConnectorService.searchCases(eq("idam_token"), anyString(), anyString(), anyString(),
+            caseType("probate_caveat"), any(), any()))
+            .thenThrow(new CcdConnectionException("CCD search failed with status 401", 401, null));
+
+        ccdPollingService.pollCcdEndpoint();
+        verify(idamService, times(1)).invalidateIdamOauth2Token();
+        verify(ccdConnectorService, times(1)).searchCases(eq("new_idam_token"), anyString(), anyString(),
+            anyString(), caseType("probate_caveat"), any(), any());
+        verifyTasksQueued(getDivorceTask(), getDivorceExceptionTask(), getDivorceEvidenceHandledTask(),
+            getProbateTask(), getProbateCaveatTask(), getProbateExceptionTask(), getFrTask(), getFrExceptionTask());
+        verify(telemetryClient, never()).trackEvent("work-allocation partial polling");
+    }
+
+    @Test
+    public void testOtherCcdFailuresDoNotReplaceTheIdamToken()
+            throws CcdConnectionException, IdamConnectionException {
+        ccdPollingService = new CcdPollingService(idamService, ccdConnectorService, caseTypeRegistry,
+            new CcdSearchExecutor(true, 4, 60), new CatchUpPlanner(TEN_YEARS, 5, TEN_YEARS), lastRunTimeService,
+            pollLeaseService, pollMembershipService, enqueuedCaseService, taskOutboxService, transactionManager, 30, 5,
+            240, queueConsumer, deadQueueConsumer, "window", telemetryClient);
+        when(lastRunTimeService.getLastRunTime()).thenReturn(Optional.of(LocalDateTime.of(2019, 9, 25, 12, 0, 0, 0)));
+        when(ccdConnectorService.searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("probate_caveat"), any(), any()))
+            .thenThrow(new CcdConnectionException("CCD search failed with status 503", 503, null));
+
+        ccdPollingService.pollCcdEndpoint();
+        verify(idamService, never()).invalidateIdamOauth2Token();
+        verify(ccdConnectorService, times(1)).searchCases(anyString(), anyString(), anyString(),
+            anyString(), caseType("probate_caveat"), any(), any());
+    }
+
+    @Test
+    public void testPollccdEndpointReadsTheNextPageAfterAFullPage()
+            throws CcdConnectionException, IdamConnectionException {
+        when(ccdConnectorService.getPageSize()).thenReturn(1);
+        when(lastRunTimeService.getLastRunTime()).thenReturn(Optional.of(LocalDateTime.of(2019, 9, 25, 12, 0, 0, 0)));
+        SearchAfter searchAfter = new SearchAfter("2019-07-18T14:36:25.862", "1563460551495313");
+        Map<String, Object> emptyPage = new HashMap<>();
+        emptyPage.put("total", 1);
+        emptyPage.put("cases", Collections.emptyList());
+        emptyPage.put("case_type_id", "DIVORCE");
+        when(ccdConnectorService.searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("divorce"), eq(searchAfter), any())).thenReturn(emptyPage);
+
+        ccdPollingService.pollCcdEndpoint();
+        verify(ccdConnectorService, times(1)).searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("divorce"), isNull(), any());
+        verify(ccdConnectorService, times(1)).searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("divorce"), eq(searchAfter), any());
+        verify(taskOutboxService, times(1)).add(Collections.singletonList(getDivorceTask()));
+    }
+
+    @Test
+    public void testPagesAreQueuedBeforeTheWindowIsComplete() throws CcdConnectionException, IdamConnectionException {
+        when(ccdConnectorService.getPageSize()).thenReturn(1);
+        LocalDateTime lastRunTime = LocalDateTime.of(2019, 7, 18, 12, 0, 0, 0);
+        when(lastRunTimeService.getLastRunTime()).thenReturn(Optional.of(lastRunTime));
+        SearchAfter searchAfter = new SearchAfter("2019-07-18T14:36:25.862", "1563460551495313");
+        when(ccdConnectorService.searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("divorce"), eq(searchAfter), any()))
+            .thenThrow(new CcdConnectionException("Failed to connect ccd.", null));
+
+        ccdPollingService.pollCcdEndpoint();
+        verify(taskOutboxService, times(1)).add(Collections.singletonList(getDivorceTask()));
+        verify(enqueuedCaseService, times(1)).markEnqueued("divorce", Collections.singletonList(getDivorceTask()));
+        // the checkpoint stays where it was, the window is searched again on the next run
+        verify(lastRunTimeService, never()).saveLastRunTime(eq("divorce"), argThat(lastRunTime::isBefore));
+    }
+
+    @Test
+    public void testPollccdEndpointCatchesUpWindowByWindow() throws CcdConnectionException, IdamConnectionException {
+        ccdPollingService = new CcdPollingService(idamService, ccdConnectorService, caseTypeRegistry,
+            new CcdSearchExecutor(false, 1, 60), new CatchUpPlanner(60, 5, 60), lastRunTimeService,
+            pollLeaseService, pollMembershipService, enqueuedCaseService, taskOutboxService, transactionManager, 30, 5,
+            240, queueConsumer, deadQueueConsumer, "window", telemetryClient);
+        LocalDateTime lastRunTime = LocalDateTime.now().minusMinutes(150);
+        when(lastRunTimeService.getLastRunTime()).thenReturn(Optional.of(lastRunTime));
+        when(ccdConnectorService.searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("divorce"), any(), any())).thenReturn(emptyPage("DIVORCE"));
+
+        ccdPollingService.pollCcdEndpoint();
+        verify(ccdConnectorService, times(3)).searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("divorce"), any(), any());
+        verify(lastRunTimeService, times(1)).saveLastRunTime("divorce", lastRunTime);
+        verify(lastRunTimeService, times(1)).saveLastRunTime("divorce", lastRunTime.plusMinutes(60));
+        verify(lastRunTimeService, times(1)).saveLastRunTime("divorce", lastRunTime.plusMinutes(120));
+        verify(lastRunTimeService, times(4)).saveLastRunTime(eq("divorce"), any());
+        verify(lastRunTimeService, times(1)).updateLastRuntime(any(LocalDateTime.class));
+    }
+
+    @Test
+    public void testNoWindowIsStartedAfterThePollDeadline() throws CcdConnectionException, IdamConnectionException {
+        ccdPollingService = new CcdPollingService(idamService, ccdConnectorService, caseTypeRegistry,
+            new CcdSearchExecutor(false, 1, 60), new CatchUpPlanner(60, 5, 60), lastRunTimeService,
+            pollLeaseService, pollMembershipService, enqueuedCaseService, taskOutboxService, transactionManager, 30, 5,
+            0, queueConsumer, deadQueueConsumer, "window", telemetryClient);
+        LocalDateTime lastRunTime = LocalDateTime.now().minusMinutes(150);
+        when(lastRunTimeService.getLastRunTime()).thenReturn(Optional.of(lastRunTime));
+
+        ccdPollingService.pollCcdEndpoint();
+        verify(ccdConnectorService, never()).searchCases(any(), any(), any(), any(), any(), any(), any());
+        verify(taskOutboxService, never()).add(any());
+        // the case types continue from their checkpoint on the next run
+        verify(lastRunTimeService, times(1)).saveLastRunTime(eq("divorce"), any());
+        verify(lastRunTimeService, times(1)).saveLastRunTime("divorce", lastRunTime);
+    }
+
+    @Test
+    public void testPollccdEndpointKeepsTheProgressWhenALaterWindowFails()
+            throws CcdConnectionException, IdamConnectionException {
+        ccdPollingService = new CcdPollingService(idamService, ccdConnectorService, caseTypeRegistry,
+            new CcdSearchExecutor(true, 4, 60), new CatchUpPlanner(60, 5, 60), lastRunTimeService,
+            pollLeaseService, pollMembershipService, enqueuedCaseService, taskOutboxService, transactionManager, 30, 5,
+            240, queueConsumer, deadQueueConsumer, "window", telemetryClient);
+        LocalDateTime lastRunTime = LocalDateTime.now().minusMinutes(150);
+        when(lastRunTimeService.getLastRunTime()).thenReturn(Optional.of(lastRunTime));
+        String secondWindowFrom = lastRunTime.plusMinutes(55).toString();
+        when(ccdConnectorService.searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("divorce"), any(), any())).thenReturn(emptyPage("DIVORCE"));
+        when(ccdConnectorService.searchCases(anyString(), anyString(), eq(secondWindowFrom), anyString(),
+            caseType("divorce"), any(), any())).thenThrow(new CcdConnectionException("Failed to connect ccd.", null));
+
+        ccdPollingService.pollCcdEndpoint();
+        verify(ccdConnectorService, times(2)).searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("divorce"), any(), any());
+        verify(ccdConnectorService, times(3)).searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("fr"), any(), any());
+        verify(lastRunTimeService, times(1)).saveLastRunTime("divorce", lastRunTime.plusMinutes(60));
+        verify(lastRunTimeService, times(2)).saveLastRunTime(eq("divorce"), any());
+        verify(lastRunTimeService, times(1)).updateLastRuntime(any(LocalDateTime.class));
+    }
+
+    @Test
+    public void testPollccdEndpointOnlyReadsDeadLettersInContinuousMode()
+            throws CcdConnectionException, IdamConnectionException {
+        ccdPollingService = new CcdPollingService(idamService, ccdConnectorService, caseTypeRegistry,
+            new CcdSearchExecutor(false, 1, 60), new CatchUpPlanner(TEN_YEARS, 5, TEN_YEARS), lastRunTimeService,
+            pollLeaseService, pollMembershipService, enqueuedCaseService, taskOutboxService, transactionManager, 30, 5,
+            240, queueConsumer, deadQueueConsumer, "continuous", telemetryClient);
+        when(lastRunTimeService.getLastRunTime()).thenReturn(Optional.of(LocalDateTime.of(2019, 9, 25, 12, 0, 0, 0)));
+
+        ccdPollingService.pollCcdEndpoint();
+        verify(deadQueueConsumer, times(1)).runConsumer(any(), any());
+        verify(queueConsumer, never()).runConsumer(any(), any());
         verify(lastRunTimeService, times(1)).updateLastRuntime(any(LocalDateTime.class));
     }
 
@@ -264,13 +468,237 @@ public class CcdPollingServiceTest {
     public void testWhenLastRunLessThanThirtyMinutes() throws CcdConnectionException, IdamConnectionException {
         when(lastRunTimeService.getMinDate()).thenReturn(LocalDateTime.now().minusMinutes(25L));
         ccdPollingService.pollCcdEndpoint();
-        verify(ccdConnectorService, times(0)).searchDivorceCases(any(), any(), any(), any(), any());
-        verify(ccdConnectorService, times(0)).findProbateCases(any(), any(), any(), any(), any());
-        verify(ccdConnectorService, times(0)).findFinancialRemedyCases(any(), any(), any(), any(), any());
-        verify(queueProducer, times(0)).placeItemsInQueue(any(), any());
+        verify(ccdConnectorService, times(0)).searchCases(any(), any(), any(), any(), any(), any(), any());
+        verify(taskOutboxService, never()).add(any());
         verify(lastRunTimeService, times(0)).updateLastRuntime(any(LocalDateTime.class));
     }
 
+    @Test
+    public void testDisabledCaseTypesAreNotSearched() throws CcdConnectionException, IdamConnectionException {
+        ccdPollingService = new CcdPollingService(idamService, ccdConnectorService,
+            new CaseTypeRegistry(CaseTypeConfiguration.defaultCaseTypes(), name -> !name.startsWith("probate")),
+            new CcdSearchExecutor(false, 1, 60), new CatchUpPlanner(TEN_YEARS, 5, TEN_YEARS), lastRunTimeService,
+            pollLeaseService, pollMembershipService, enqueuedCaseService, taskOutboxService, transactionManager, 30, 5,
+            240, queueConsumer, deadQueueConsumer, "window", telemetryClient);
+        when(lastRunTimeService.getLastRunTime()).thenReturn(Optional.of(LocalDateTime.of(2019, 9, 25, 12, 0, 0, 0)));
+
+        ccdPollingService.pollCcdEndpoint();
+        verify(ccdConnectorService, times(5)).searchCases(anyString(), anyString(), anyString(), anyString(), any(),
+            any(), any());
+        verify(ccdConnectorService, never()).searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("probate_gop"), any(), any());
+        verifyTasksQueued(getDivorceTask(), getDivorceExceptionTask(), getDivorceEvidenceHandledTask(), getFrTask(),
+            getFrExceptionTask());
+    }
+
+    @Test
+    public void testUnchangedCasesAreNotQueuedAgain() throws CcdConnectionException, IdamConnectionException {
+        when(lastRunTimeService.getLastRunTime()).thenReturn(Optional.of(LocalDateTime.of(2019, 9, 25, 12, 0, 0, 0)));
+        Task divorceTask = getDivorceTask();
+        when(enqueuedCaseService.filterUnchanged(anyString(), any())).thenAnswer(invocation -> {
+            List<Task> tasks = invocation.getArgument(1);
+            return tasks.contains(divorceTask) ? tasks : Collections.emptyList();
+        });
+
+        ccdPollingService.pollCcdEndpoint();
+        verifyTasksQueued(divorceTask);
+        verify(enqueuedCaseService, times(1)).markEnqueued("divorce", Collections.singletonList(divorceTask));
+    }
+
+    @Test
+    public void testCaseFoundByBothDivorceQueriesIsNotQueuedAgain()
+            throws CcdConnectionException, IdamConnectionException, IOException {
+        EntityManager em = mock(EntityManager.class);
+        Query query = mock(Query.class);
+        when(em.createNativeQuery(anyString())).thenReturn(query);
+        when(query.setParameter(anyString(), any())).thenReturn(query);
+        when(query.setParameter(anyInt(), any())).thenReturn(query);
+        when(query.getResultList()).thenReturn(Collections.emptyList());
+        EnqueuedCaseService realEnqueuedCaseService = new EnqueuedCaseService(100, 30);
+        ReflectionTestUtils.setField(realEnqueuedCaseService, "em", em);
+        ccdPollingService = new CcdPollingService(idamService, ccdConnectorService, caseTypeRegistry,
+            new CcdSearchExecutor(false, 1, 60), new CatchUpPlanner(TEN_YEARS, 5, TEN_YEARS), lastRunTimeService,
+            pollLeaseService, pollMembershipService, realEnqueuedCaseService, taskOutboxService, transactionManager,
+            30, 5, 240, queueConsumer, deadQueueConsumer, "window", telemetryClient);
+        when(lastRunTimeService.getLastRunTime()).thenReturn(Optional.of(LocalDateTime.of(2019, 9, 25, 12, 0, 0, 0)));
+        // the evidence query finds the submitted divorce case as well and queues it as supplementary evidence
+        Map<String, Object> divorceEvidenceResponse = divorceSearchResult();
+        divorceEvidenceResponse.put("case_type_id", "DIVORCE");
+        when(ccdConnectorService.searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("divorce_evidence"), any(), any())).thenReturn(divorceEvidenceResponse);
+        Task divorceTask = getDivorceTask();
+        Task evidenceTask = getDivorceTask();
+        evidenceTask.setState("SupplementaryEvidence");
+
+        ccdPollingService.pollCcdEndpoint();
+        ccdPollingService.pollCcdEndpoint();
+        verify(taskOutboxService, times(1)).add(Collections.singletonList(divorceTask));
+        verify(taskOutboxService, times(1)).add(Collections.singletonList(evidenceTask));
+        // every case is only queued by the first poll
+        verify(taskOutboxService, times(8)).add(any());
+    }
+
+    @Test
+    public void testCaseTypesContinueFromTheirOwnCheckpoint() throws CcdConnectionException, IdamConnectionException {
+        when(lastRunTimeService.getLastRunTime()).thenReturn(Optional.of(LocalDateTime.of(2019, 7, 18, 12, 0, 0, 0)));
+        when(lastRunTimeService.getLastRunTime("divorce")).thenReturn(Optional.of(LocalDateTime.of(2019, 7, 1, 0, 0)));
+
+        ccdPollingService.pollCcdEndpoint();
+        verify(ccdConnectorService, times(1)).searchCases(anyString(), anyString(), eq("2019-06-30T23:55"),
+            anyString(), caseType("divorce"), any(), any());
+        verify(ccdConnectorService, times(1)).searchCases(anyString(), anyString(), eq("2019-07-18T11:55"),
+            anyString(), caseType("fr"), any(), any());
+        // the checkpoint is the last modified date of the case found, not the time of the poll
+        verify(lastRunTimeService, times(1)).saveLastRunTime("divorce",
+            LocalDateTime.parse("2019-07-18T14:36:25.862"));
+        verify(lastRunTimeService, never()).saveLastRunTime(eq("divorce"), argThat(time -> time.getYear() > 2019));
+    }
+
+    @Test
+    public void testCheckpointIsNotMovedWhenTheTasksCanNotBeWritten()
+            throws CcdConnectionException, IdamConnectionException {
+        ccdPollingService = new CcdPollingService(idamService, ccdConnectorService, caseTypeRegistry,
+            new CcdSearchExecutor(true, 4, 60), new CatchUpPlanner(TEN_YEARS, 5, TEN_YEARS), lastRunTimeService,
+            pollLeaseService, pollMembershipService, enqueuedCaseService, taskOutboxService, transactionManager, 30, 5,
+            240, queueConsumer, deadQueueConsumer, "window", telemetryClient);
+        LocalDateTime lastRunTime = LocalDateTime.of(2019, 7, 18, 12, 0, 0, 0);
+        when(lastRunTimeService.getLastRunTime()).thenReturn(Optional.of(lastRunTime));
+        doThrow(new IllegalStateException("connection refused")).when(taskOutboxService)
+            .add(Collections.singletonList(getDivorceTask()));
+
+        ccdPollingService.pollCcdEndpoint();
+        verify(transactionManager, times(1)).rollback(any());
+        verify(lastRunTimeService, never()).saveLastRunTime(eq("divorce"), argThat(lastRunTime::isBefore));
+        verify(lastRunTimeService, times(1)).saveLastRunTime("divorce_exception",
+            LocalDateTime.parse("2019-07-18T14:36:25.862"));
+        verify(telemetryClient, times(1)).trackEvent("work-allocation partial polling");
+    }
+
+    @Test
+    public void testPollIsSkippedWhileAnotherInstanceHoldsTheLease()
+            throws CcdConnectionException, IdamConnectionException {
+        when(pollLeaseService.acquire(PollLeaseService.CCD_POLL)).thenReturn(Optional.empty());
+
+        ccdPollingService.pollCcdEndpoint();
+        verify(lastRunTimeService, never()).getLastRunTime();
+        verify(ccdConnectorService, never()).searchCases(any(), any(), any(), any(), any(), any(), any());
+        verify(pollLeaseService, never()).release(any());
+    }
+
+    @Test
+    public void testLeaseIsRenewedAndReleased() throws CcdConnectionException, IdamConnectionException {
+        when(lastRunTimeService.getLastRunTime()).thenReturn(Optional.of(LocalDateTime.of(2019, 9, 25, 12, 0, 0, 0)));
+
+        ccdPollingService.pollCcdEndpoint();
+        verify(pollLeaseService, times(8)).renew(LEASE);
+        verify(pollLeaseService, times(1)).release(LEASE);
+        // every write checks the lease: 8 new checkpoints, 8 windows and the last run time
+        verify(pollLeaseService, times(17)).checkHeld(LEASE);
+    }
+
+    @Test
+    public void testNothingIsWrittenAfterTheLeaseIsLost() throws CcdConnectionException, IdamConnectionException {
+        when(lastRunTimeService.getLastRunTime()).thenReturn(Optional.of(LocalDateTime.of(2019, 9, 25, 12, 0, 0, 0)));
+        doThrow(new LeaseLostException("lost")).when(pollLeaseService).checkHeld(LEASE);
+
+        try {
+            ccdPollingService.pollCcdEndpoint();
+            Assert.fail("LeaseLostException expected");
+        } catch (LeaseLostException e) {
+            Assert.assertEquals("lost", e.getMessage());
+        }
+        verify(lastRunTimeService, never()).saveLastRunTime(any(), any());
+        verify(taskOutboxService, never()).add(any());
+        verify(lastRunTimeService, never()).updateLastRuntime(any(LocalDateTime.class));
+        verify(pollLeaseService, times(1)).release(LEASE);
+    }
+
+    @Test
+    public void testShardedPollOnlySearchesTheAssignedCaseTypes()
+            throws CcdConnectionException, IdamConnectionException {
+        when(pollMembershipService.isEnabled()).thenReturn(true);
+        when(pollMembershipService.assign(any()))
+            .thenReturn(Arrays.asList(caseTypeRegistry.get("divorce"), caseTypeRegistry.get("fr")));
+        PollLease divorceLease = new PollLease(PollLeaseService.CCD_POLL + "/divorce", "test", 1);
+        when(pollLeaseService.acquire(PollLeaseService.CCD_POLL + "/divorce")).thenReturn(Optional.of(divorceLease));
+        when(pollLeaseService.acquire(PollLeaseService.CCD_POLL + "/fr")).thenReturn(Optional.empty());
+        when(lastRunTimeService.getLastRunTime("divorce"))
+            .thenReturn(Optional.of(LocalDateTime.of(2019, 7, 18, 12, 0, 0, 0)));
+
+        ccdPollingService.pollCcdEndpoint();
+        verify(ccdConnectorService, times(1)).searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("divorce"), any(), any());
+        verify(ccdConnectorService, times(1)).searchCases(any(), any(), any(), any(), any(), any(), any());
+        verifyTasksQueued(getDivorceTask());
+        verify(lastRunTimeService, times(1)).saveLastRunTime("divorce", LocalDateTime.parse("2019-07-18T14:36:25.862"));
+        verify(pollLeaseService, times(2)).checkHeld(divorceLease);
+        verify(pollLeaseService, times(1)).release(divorceLease);
+        verify(pollLeaseService, never()).acquire(PollLeaseService.CCD_POLL);
+        verify(lastRunTimeService, never()).getLastRunTime();
+        verify(lastRunTimeService, never()).updateLastRuntime(any(LocalDateTime.class));
+    }
+
+    @Test
+    public void testShardedPollSkipsCaseTypesPolledWithinTheInterval()
+            throws CcdConnectionException, IdamConnectionException {
+        when(pollMembershipService.isEnabled()).thenReturn(true);
+        when(pollMembershipService.assign(any()))
+            .thenReturn(Arrays.asList(caseTypeRegistry.get("divorce"), caseTypeRegistry.get("fr")));
+        PollLease frLease = new PollLease(PollLeaseService.CCD_POLL + "/fr", "test", 1);
+        when(pollLeaseService.acquire(PollLeaseService.CCD_POLL + "/fr")).thenReturn(Optional.of(frLease));
+        // the windows end 5 minutes before the poll, divorce was polled 20 minutes ago
+        when(lastRunTimeService.getLastRunTime("divorce"))
+            .thenReturn(Optional.of(LocalDateTime.now().minusMinutes(25)));
+        when(lastRunTimeService.getLastRunTime("fr")).thenReturn(Optional.of(LocalDateTime.now().minusMinutes(40)));
+
+        ccdPollingService.pollCcdEndpoint();
+        verify(pollLeaseService, never()).acquire(PollLeaseService.CCD_POLL + "/divorce");
+        verify(ccdConnectorService, never()).searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("divorce"), any(), any());
+        verify(ccdConnectorService, times(1)).searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("fr"), any(), any());
+        verify(pollLeaseService, times(1)).release(frLease);
+    }
+
+    @Test
+    public void testShardedPollStartsNewCaseTypesOneIntervalAgo()
+            throws CcdConnectionException, IdamConnectionException {
+        when(pollMembershipService.isEnabled()).thenReturn(true);
+        when(pollMembershipService.assign(any())).thenReturn(Collections.singletonList(caseTypeRegistry.get("fr")));
+        PollLease frLease = new PollLease(PollLeaseService.CCD_POLL + "/fr", "test", 1);
+        when(pollLeaseService.acquire(PollLeaseService.CCD_POLL + "/fr")).thenReturn(Optional.of(frLease));
+        when(ccdConnectorService.searchCases(anyString(), anyString(), anyString(), anyString(),
+            caseType("fr"), any(), any())).thenReturn(emptyPage("FinancialRemedyMVP2"));
+        LocalDateTime before = LocalDateTime.now();
+
+        ccdPollingService.pollCcdEndpoint();
+        // the poll interval of the test is 30 minutes
+        LocalDateTime after = LocalDateTime.now();
+        verify(lastRunTimeService, times(1)).saveLastRunTime(eq("fr"), argThat(checkpoint ->
+            !checkpoint.isBefore(before.minusMinutes(30)) && !checkpoint.isAfter(after.minusMinutes(30))));
+        verify(lastRunTimeService, never()).getLastRunTime();
+        verify(lastRunTimeService, never()).getMinDate();
+    }
+
+    private static Map<String, Object> emptyPage(String caseTypeId) {
+        Map<String, Object> page = new HashMap<>();
+        page.put("total", 0);
+        page.put("cases", Collections.emptyList());
+        page.put("case_type_id", caseTypeId);
+        return page;
+    }
+
+    private static CaseType caseType(String name) {
+        return argThat(caseType -> caseType != null && name.equals(caseType.getName()));
+    }
+
+    private void verifyTasksQueued(Task... tasks) {
+        for (Task task : tasks) {
+            verify(taskOutboxService, times(1)).add(Collections.singletonList(task));
+        }
+        verify(taskOutboxService, times(tasks.length)).add(any());
+    }
+
     //CHECKSTYLE:OFF
     @SuppressWarnings("unchecked")
     private Map<String, Object> divorceExceptionSearchResult() throws IOException {
@@ -0,0 +1,116 @@
+package uk.gov.hmcts.reform.workallocation.service;
+
+import net.serenitybdd.junit.runners.SerenityRunner;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import uk.gov.hmcts.reform.workallocation.exception.CcdConnectionException;
+import uk.gov.hmcts.reform.workallocation.services.CcdSearchExecutor;
+import uk.gov.hmcts.reform.workallocation.services.PollDeadline;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SerenityRunner.class)
+public class CcdSearchExecutorTest {
+
+    private CcdSearchExecutor executor;
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testSerialSearchKeepsOrder() throws CcdConnectionException {
+        executor = new CcdSearchExecutor(false, 1, 60);
+        CcdSearchExecutor.SearchResults<String> results = executor.execute(searches(), deadline());
+        assertEquals(Arrays.asList("a", "b", "c"), Arrays.asList(results.getResults().values().toArray()));
+        assertFalse(results.hasFailures());
+    }
+
+    @Test
+    public void testSerialSearchContinuesAfterAFailure() throws CcdConnectionException {
+        executor = new CcdSearchExecutor(false, 1, 60);
+        Map<String, CcdSearchExecutor.CcdSearch<String>> searches = new LinkedHashMap<>();
+        searches.put("failing", () -> {
+            throw new CcdConnectionException("Failed to connect ccd.", null);
+        });
+        searches.putAll(searches());
+        CcdSearchExecutor.SearchResults<String> results = executor.execute(searches, deadline());
+        assertEquals(Arrays.asList("a", "b", "c"), Arrays.asList(results.getResults().values().toArray()));
+        assertEquals(Collections.singleton("failing"), results.getFailures().keySet());
+        assertTrue(results.getFailures().get("failing") instanceof CcdConnectionException);
+    }
+
+    @Test
+    public void testParallelSearchCollectsFailuresAndTimeouts() throws CcdConnectionException {
+        executor = new CcdSearchExecutor(true, 4, 60);
+        AtomicBoolean slowSearchStopped = new AtomicBoolean();
+        Map<String, CcdSearchExecutor.CcdSearch<String>> searches = searches();
+        searches.put("failing", () -> {
+            throw new CcdConnectionException("Failed to connect ccd.", null);
+        });
+        searches.put("slow", () -> {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            slowSearchStopped.set(true);
+            return "slow";
+        });
+        CcdSearchExecutor.SearchResults<String> results = executor.execute(searches, deadline());
+        assertEquals(Arrays.asList("a", "b", "c"), Arrays.asList(results.getResults().values().toArray()));
+        assertTrue(results.hasFailures());
+        assertTrue(results.getFailures().get("failing") instanceof CcdConnectionException);
+        assertTrue(results.getFailures().get("slow") instanceof TimeoutException);
+        // the search is interrupted at the deadline and has stopped before the results are returned
+        assertTrue(slowSearchStopped.get());
+    }
+
+    @Test
+    public void testSearchIgnoringTheInterruptIsOnlyWaitedForUpToTheSearchTimeout() {
+        executor = new CcdSearchExecutor(true, 4, 1);
+        long started = System.nanoTime();
+        Map<String, CcdSearchExecutor.CcdSearch<String>> searches = new LinkedHashMap<>();
+        // like a socket read, the search does not stop when it is interrupted
+        searches.put("stuck", () -> {
+            long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (System.nanoTime() < until) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException expected) {
+                    // keeps running
+                }
+            }
+            return "stuck";
+        });
+        CcdSearchExecutor.SearchResults<String> results = executor.execute(searches, deadline());
+        assertTrue(results.getFailures().get("stuck") instanceof TimeoutException);
+        // one second deadline and one second search timeout
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    private static PollDeadline deadline() {
+        return PollDeadline.after(Duration.ofSeconds(1));
+    }
+
+    private Map<String, CcdSearchExecutor.CcdSearch<String>> searches() {
+        Map<String, CcdSearchExecutor.CcdSearch<String>> searches = new LinkedHashMap<>();
+        searches.put("a", () -> "a");
+        searches.put("b", () -> "b");
+        searches.put("c", () -> "c");
+        return searches;
+    }
+}
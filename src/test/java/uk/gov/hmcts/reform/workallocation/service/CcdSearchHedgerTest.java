@@ -0,0 +1,173 @@
+package uk.gov.hmcts.reform.workallocation.service;
+
+import net.serenitybdd.junit.runners.SerenityRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import uk.gov.hmcts.reform.workallocation.exception.CcdConnectionException;
+import uk.gov.hmcts.reform.workallocation.services.CcdSearchHedger;
+import uk.gov.hmcts.reform.workallocation.services.PollDeadline;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(SerenityRunner.class)
+public class CcdSearchHedgerTest {
+
+    private static final Map<String, Object> RESPONSE = Collections.singletonMap("total", 1);
+
+    private CcdSearchHedger hedger = new CcdSearchHedger(30, true, 50, 10, 4, 3, 10, 20);
+
+    @After
+    public void tearDown() {
+        hedger.shutdown();
+    }
+
+    @Test
+    public void testSlowSearchIsHedged() throws CcdConnectionException {
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<Map<String, Object>> slow = new CompletableFuture<>();
+        // the first request never answers, the hedged one does
+        Map<String, Object> response = hedger.search(PollDeadline.after(Duration.ofSeconds(5)),
+            () -> calls.incrementAndGet() == 1 ? slow : CompletableFuture.completedFuture(RESPONSE));
+
+        Assert.assertEquals(RESPONSE, response);
+        Assert.assertEquals(2, calls.get());
+        Assert.assertTrue("The losing request should be cancelled", slow.isCancelled());
+    }
+
+    @Test
+    public void testBlockingSearchThatLostIsInterrupted() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Map<String, Object> response = hedger.search(PollDeadline.after(Duration.ofSeconds(5)), () -> {
+            if (calls.incrementAndGet() == 1) {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return new CompletableFuture<>();
+            }
+            return CompletableFuture.completedFuture(RESPONSE);
+        });
+
+        Assert.assertEquals(RESPONSE, response);
+        Assert.assertTrue("The losing request should be interrupted", interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testTimedOutSearchIsCancelled() {
+        hedger.shutdown();
+        hedger = new CcdSearchHedger(30, false, 50, 10, 4, 1, 10, 20);
+        CompletableFuture<Map<String, Object>> slow = new CompletableFuture<>();
+        try {
+            hedger.search(PollDeadline.after(Duration.ofMillis(300)), () -> slow);
+            Assert.fail("The search should have timed out");
+        } catch (CcdConnectionException e) {
+            Assert.assertTrue("The timed out request should be cancelled", slow.isCancelled());
+        }
+    }
+
+    @Test
+    public void testHedgingCanBeDisabled() {
+        hedger.shutdown();
+        hedger = new CcdSearchHedger(30, false, 50, 10, 4, 1, 10, 20);
+        AtomicInteger calls = new AtomicInteger();
+        try {
+            hedger.search(PollDeadline.after(Duration.ofMillis(300)), () -> {
+                calls.incrementAndGet();
+                return new CompletableFuture<>();
+            });
+            Assert.fail("The search should have timed out");
+        } catch (CcdConnectionException e) {
+            Assert.assertEquals(1, calls.get());
+        }
+    }
+
+    @Test
+    public void testFailedSearchIsRetried() throws CcdConnectionException {
+        AtomicInteger calls = new AtomicInteger();
+        Map<String, Object> response = hedger.search(PollDeadline.after(Duration.ofSeconds(5)),
+            () -> calls.incrementAndGet() < 3
+                ? CompletableFuture.failedFuture(new CcdConnectionException("Failed to connect ccd.", null))
+                : CompletableFuture.completedFuture(RESPONSE));
+
+        Assert.assertEquals(RESPONSE, response);
+        Assert.assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void testRejectedSearchIsNotRetried() {
+        AtomicInteger calls = new AtomicInteger();
+        CcdConnectionException failure = new CcdConnectionException("Failed to connect ccd.", 401, null);
+        try {
+            hedger.search(PollDeadline.after(Duration.ofSeconds(5)), () -> {
+                calls.incrementAndGet();
+                return CompletableFuture.failedFuture(failure);
+            });
+            Assert.fail("The search should have failed");
+        } catch (CcdConnectionException e) {
+            Assert.assertSame(failure, e);
+            Assert.assertEquals(1, calls.get());
+        }
+    }
+
+    @Test
+    public void testThrottledSearchIsRetried() throws CcdConnectionException {
+        AtomicInteger calls = new AtomicInteger();
+        Map<String, Object> response = hedger.search(PollDeadline.after(Duration.ofSeconds(5)),
+            () -> calls.incrementAndGet() == 1
+                ? CompletableFuture.failedFuture(new CcdConnectionException("Failed to connect ccd.", 429, null))
+                : CompletableFuture.completedFuture(RESPONSE));
+
+        Assert.assertEquals(RESPONSE, response);
+        Assert.assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testLastFailureIsThrownWhenTheAttemptsAreUsedUp() {
+        AtomicInteger calls = new AtomicInteger();
+        CcdConnectionException failure = new CcdConnectionException("Failed to connect ccd.", null);
+        try {
+            hedger.search(PollDeadline.after(Duration.ofSeconds(5)), () -> {
+                calls.incrementAndGet();
+                return CompletableFuture.failedFuture(failure);
+            });
+            Assert.fail("The search should have failed");
+        } catch (CcdConnectionException e) {
+            Assert.assertSame(failure, e);
+            Assert.assertEquals(3, calls.get());
+        }
+    }
+
+    @Test
+    public void testNothingIsSearchedAfterTheDeadline() {
+        AtomicInteger calls = new AtomicInteger();
+        try {
+            hedger.search(PollDeadline.after(Duration.ZERO), () -> {
+                calls.incrementAndGet();
+                return CompletableFuture.completedFuture(RESPONSE);
+            });
+            Assert.fail("The search should have failed");
+        } catch (CcdConnectionException e) {
+            Assert.assertEquals(0, calls.get());
+        }
+    }
+
+    @Test
+    public void testHedgeDelayFollowsTheRecentLatencies() throws CcdConnectionException {
+        Assert.assertEquals(50, hedger.getHedgeDelayMillis());
+        for (int i = 0; i < 20; i++) {
+            hedger.search(PollDeadline.after(Duration.ofSeconds(5)), () -> CompletableFuture.completedFuture(RESPONSE));
+        }
+        // the searches answer straight away, the delay drops to its minimum
+        Assert.assertEquals(10, hedger.getHedgeDelayMillis());
+    }
+}
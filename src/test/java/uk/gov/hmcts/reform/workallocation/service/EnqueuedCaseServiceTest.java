@@ -0,0 +1,107 @@
+package uk.gov.hmcts.reform.workallocation.service;
+
+import net.serenitybdd.junit.runners.SerenityRunner;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import uk.gov.hmcts.reform.workallocation.model.Task;
+import uk.gov.hmcts.reform.workallocation.services.EnqueuedCaseService;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(SerenityRunner.class)
+public class EnqueuedCaseServiceTest {
+
+    private static final LocalDateTime LAST_MODIFIED = LocalDateTime.of(2019, 9, 25, 12, 0, 0);
+
+    @Mock
+    private EntityManager em;
+
+    @Mock
+    private Query query;
+
+    private EnqueuedCaseService enqueuedCaseService;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        enqueuedCaseService = new EnqueuedCaseService(10, 30);
+        ReflectionTestUtils.setField(enqueuedCaseService, "em", em);
+        when(em.createNativeQuery(anyString())).thenReturn(query);
+        when(query.setParameter(anyString(), any())).thenReturn(query);
+        when(query.setParameter(anyInt(), any())).thenReturn(query);
+        when(query.getResultList()).thenReturn(Collections.emptyList());
+    }
+
+    @Test
+    public void testUnknownAndChangedCasesAreKept() {
+        Object[] row = {"1", Timestamp.valueOf(LAST_MODIFIED), "Submitted"};
+        when(query.getResultList()).thenReturn(Collections.singletonList(row));
+        Task unchanged = task("1", LAST_MODIFIED, "Submitted");
+        Task unknown = task("2", LAST_MODIFIED, "Submitted");
+
+        Assert.assertEquals(Collections.singletonList(unknown),
+            enqueuedCaseService.filterUnchanged("divorce", Arrays.asList(unchanged, unknown)));
+        Assert.assertEquals(Collections.singletonList(task("1", LAST_MODIFIED, "AwaitingHWFDecision")),
+            enqueuedCaseService.filterUnchanged("divorce",
+                Collections.singletonList(task("1", LAST_MODIFIED, "AwaitingHWFDecision"))));
+    }
+
+    @Test
+    public void testQueuedCasesAreFilteredFromMemory() {
+        Task task = task("1", LAST_MODIFIED, "Submitted");
+        enqueuedCaseService.markEnqueued("divorce", Arrays.asList(task, task));
+        verify(em, times(1)).createNativeQuery(startsWith("insert into enqueued_case"));
+
+        List<Task> tasks = enqueuedCaseService.filterUnchanged("divorce", Collections.singletonList(task));
+        Assert.assertTrue(tasks.isEmpty());
+        verify(em, never()).createNativeQuery(startsWith("select"));
+
+        Task modified = task("1", LAST_MODIFIED.plusMinutes(1), "Submitted");
+        Assert.assertEquals(Collections.singletonList(modified),
+            enqueuedCaseService.filterUnchanged("divorce", Collections.singletonList(modified)));
+    }
+
+    @Test
+    public void testCaseTypesFindingTheSameCaseKeepTheirOwnState() {
+        Task submitted = task("1", LAST_MODIFIED, "Submitted");
+        Task evidence = task("1", LAST_MODIFIED, "SupplementaryEvidence");
+        enqueuedCaseService.markEnqueued("divorce", Collections.singletonList(submitted));
+        enqueuedCaseService.markEnqueued("divorce_evidence", Collections.singletonList(evidence));
+
+        Assert.assertTrue(enqueuedCaseService.filterUnchanged("divorce", Collections.singletonList(submitted))
+            .isEmpty());
+        Assert.assertTrue(enqueuedCaseService.filterUnchanged("divorce_evidence",
+            Collections.singletonList(evidence)).isEmpty());
+        verify(em, never()).createNativeQuery(startsWith("select"));
+    }
+
+    private static Task task(String id, LocalDateTime lastModified, String state) {
+        return Task.builder()
+            .id(id)
+            .state(state)
+            .jurisdiction("DIVORCE")
+            .caseTypeId("DIVORCE")
+            .lastModifiedDate(lastModified)
+            .build();
+    }
+}
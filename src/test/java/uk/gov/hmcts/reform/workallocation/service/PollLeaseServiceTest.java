@@ -0,0 +1,87 @@
+package uk.gov.hmcts.reform.workallocation.service;
+
+import net.serenitybdd.junit.runners.SerenityRunner;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import uk.gov.hmcts.reform.workallocation.exception.LeaseLostException;
+import uk.gov.hmcts.reform.workallocation.services.PollLease;
+import uk.gov.hmcts.reform.workallocation.services.PollLeaseService;
+
+import java.util.Collections;
+import java.util.Optional;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(SerenityRunner.class)
+public class PollLeaseServiceTest {
+
+    private static final PollLease LEASE = new PollLease(PollLeaseService.CCD_POLL, "owner", 3);
+
+    @Mock
+    private EntityManager em;
+
+    @Mock
+    private Query query;
+
+    private PollLeaseService pollLeaseService;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        pollLeaseService = new PollLeaseService(300);
+        ReflectionTestUtils.setField(pollLeaseService, "em", em);
+        when(em.createNativeQuery(anyString())).thenReturn(query);
+        when(query.setParameter(anyString(), any())).thenReturn(query);
+    }
+
+    @Test
+    public void testLeaseIsAcquiredWithTheNextFencingToken() {
+        when(query.getResultList()).thenReturn(Collections.singletonList(4L));
+
+        Optional<PollLease> lease = pollLeaseService.acquire(PollLeaseService.CCD_POLL);
+        Assert.assertTrue(lease.isPresent());
+        Assert.assertEquals(4L, lease.get().getFencingToken());
+        Assert.assertEquals(PollLeaseService.CCD_POLL, lease.get().getName());
+        verify(query, times(1)).setParameter("ttl", 300L);
+    }
+
+    @Test
+    public void testLeaseHeldByAnotherInstanceIsNotAcquired() {
+        when(query.getResultList()).thenReturn(Collections.emptyList());
+
+        Assert.assertFalse(pollLeaseService.acquire(PollLeaseService.CCD_POLL).isPresent());
+    }
+
+    @Test
+    public void testRenewalKeepsTheFencingToken() {
+        when(query.executeUpdate()).thenReturn(1);
+
+        pollLeaseService.renew(LEASE);
+        verify(query, times(1)).setParameter("token", 3L);
+    }
+
+    @Test(expected = LeaseLostException.class)
+    public void testRenewalOfATakenOverLeaseFails() {
+        when(query.executeUpdate()).thenReturn(0);
+
+        pollLeaseService.renew(LEASE);
+    }
+
+    @Test(expected = LeaseLostException.class)
+    public void testCheckFailsWhenTheLeaseIsNotHeld() {
+        when(query.getResultList()).thenReturn(Collections.emptyList());
+
+        pollLeaseService.checkHeld(LEASE);
+    }
+}
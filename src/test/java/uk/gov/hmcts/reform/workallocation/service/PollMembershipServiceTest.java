@@ -0,0 +1,91 @@
+package uk.gov.hmcts.reform.workallocation.service;
+
+import net.serenitybdd.junit.runners.SerenityRunner;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import uk.gov.hmcts.reform.workallocation.config.CaseTypeConfiguration;
+import uk.gov.hmcts.reform.workallocation.services.CaseType;
+import uk.gov.hmcts.reform.workallocation.services.PollMembershipService;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(SerenityRunner.class)
+public class PollMembershipServiceTest {
+
+    @Mock
+    private EntityManager em;
+
+    @Mock
+    private Query query;
+
+    private PollMembershipService pollMembershipService;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        pollMembershipService = new PollMembershipService(true, 30);
+        ReflectionTestUtils.setField(pollMembershipService, "em", em);
+        when(em.createNativeQuery(anyString())).thenReturn(query);
+        when(query.setParameter(anyString(), any())).thenReturn(query);
+    }
+
+    @Test
+    public void testCaseTypesAreDealtOutToTheLiveMembers() {
+        when(query.getResultList())
+            .thenReturn(Arrays.asList("member-a", pollMembershipService.getMemberId(), "member-c"));
+
+        List<CaseType> assigned = pollMembershipService.assign(CaseTypeConfiguration.defaultCaseTypes());
+        Assert.assertEquals(Arrays.asList("divorce_evidence", "fr_exception", "probate_gop"), names(assigned));
+        verify(em, never()).createNativeQuery(startsWith("insert"));
+    }
+
+    @Test
+    public void testMemberJoinsBeforeItsFirstAssignment() {
+        when(query.getResultList()).thenReturn(Collections.singletonList("member-z"),
+            Arrays.asList(pollMembershipService.getMemberId(), "member-z"));
+
+        List<CaseType> assigned = pollMembershipService.assign(CaseTypeConfiguration.defaultCaseTypes());
+        Assert.assertEquals(Arrays.asList("divorce", "divorce_exception", "fr_exception", "probate_caveat"),
+            names(assigned));
+        verify(em, times(1)).createNativeQuery(startsWith("insert into poll_member"));
+    }
+
+    @Test
+    public void testEveryCaseTypeIsPolledWhenShardingIsDisabled() {
+        PollMembershipService disabled = new PollMembershipService(false, 30);
+        List<CaseType> caseTypes = CaseTypeConfiguration.defaultCaseTypes();
+
+        Assert.assertEquals(caseTypes, disabled.assign(caseTypes));
+        disabled.heartbeat();
+        disabled.leave();
+    }
+
+    @Test
+    public void testLeavingRemovesTheMember() {
+        pollMembershipService.leave();
+        verify(em, times(1)).createNativeQuery(startsWith("delete from poll_member where member_id"));
+        verify(query, times(1)).setParameter("memberId", pollMembershipService.getMemberId());
+    }
+
+    private static List<String> names(List<CaseType> caseTypes) {
+        return caseTypes.stream().map(CaseType::getName).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,167 @@
+package uk.gov.hmcts.reform.workallocation.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.serenitybdd.junit.runners.SerenityRunner;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+import uk.gov.hmcts.reform.workallocation.model.Task;
+import uk.gov.hmcts.reform.workallocation.queue.BatchSendResult;
+import uk.gov.hmcts.reform.workallocation.queue.QueueProducer;
+import uk.gov.hmcts.reform.workallocation.services.OutboxEntry;
+import uk.gov.hmcts.reform.workallocation.services.TaskOutboxRelay;
+import uk.gov.hmcts.reform.workallocation.services.TaskOutboxService;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(SerenityRunner.class)
+public class TaskOutboxRelayTest {
+
+    @Mock
+    private TaskOutboxService taskOutboxService;
+
+    @Mock
+    private QueueProducer<Task> queueProducer;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private TaskOutboxRelay relay;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        relay = new TaskOutboxRelay(taskOutboxService, queueProducer, new ObjectMapper(), transactionManager, 2, 3);
+        when(taskOutboxService.claim(anyInt())).thenReturn(Collections.emptyList());
+    }
+
+    @Test
+    public void testSentEntriesAreDeleted() {
+        when(taskOutboxService.claim(2)).thenReturn(Collections.singletonList(entry(1, "100")));
+        when(queueProducer.placeItemsInQueue(any(), any())).thenReturn(
+            Collections.singletonList(sent(Collections.singletonList("100"), 0)));
+
+        relay.relay();
+        verify(queueProducer, times(1)).placeItemsInQueue(eq(Collections.singletonList(task("100"))), any());
+        verify(taskOutboxService, times(1)).delete(Collections.singletonList(1L));
+        verify(taskOutboxService, never()).retryLater(any(), any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    public void testFailedEntriesAreRetriedLater() {
+        when(taskOutboxService.claim(2)).thenReturn(Arrays.asList(entry(1, "100"), entry(2, "200")));
+        when(queueProducer.placeItemsInQueue(any(), any())).thenReturn(Arrays.asList(
+            sent(Collections.singletonList("100"), 0),
+            failed(Collections.singletonList("200"), new IllegalStateException("server busy"), 1)));
+
+        relay.relay();
+        verify(taskOutboxService, times(1)).delete(Collections.singletonList(1L));
+        verify(taskOutboxService, times(1)).retryLater(eq(Collections.singletonList(2L)), startsWith(
+            "java.lang.IllegalStateException: server busy"));
+        // the batch was not sent completely, the relay waits for its next run
+        verify(taskOutboxService, times(1)).claim(anyInt());
+    }
+
+    @Test
+    public void testFullBatchesAreRelayedUntilTheOutboxIsEmpty() {
+        List<OutboxEntry> fullBatch = Arrays.asList(entry(1, "100"), entry(2, "200"));
+        when(taskOutboxService.claim(2)).thenReturn(fullBatch, Collections.singletonList(entry(3, "300")));
+        when(queueProducer.placeItemsInQueue(any(), any())).thenReturn(
+            Collections.singletonList(sent(Arrays.asList("100", "200"), 0, 1)),
+            Collections.singletonList(sent(Collections.singletonList("300"), 0)));
+
+        relay.relay();
+        verify(taskOutboxService, times(2)).claim(2);
+        verify(taskOutboxService, times(1)).delete(Arrays.asList(1L, 2L));
+        verify(taskOutboxService, times(1)).delete(Collections.singletonList(3L));
+    }
+
+    @Test
+    public void testUnreadableEntryIsParkedWithoutHoldingBackTheOthers() {
+        when(taskOutboxService.claim(2)).thenReturn(Arrays.asList(new OutboxEntry(1, "100", "{", 0), entry(2, "200")));
+        when(queueProducer.placeItemsInQueue(any(), any())).thenReturn(
+            Collections.singletonList(sent(Collections.singletonList("200"), 0)));
+
+        relay.relay();
+        verify(queueProducer, times(1)).placeItemsInQueue(eq(Collections.singletonList(task("200"))), any());
+        verify(taskOutboxService, times(1)).delete(Collections.singletonList(2L));
+        verify(taskOutboxService, times(1)).park(eq(Collections.singletonList(1L)), any());
+        verify(taskOutboxService, never()).retryLater(any(), any());
+    }
+
+    @Test
+    public void testEntryIsParkedWhenItsAttemptsAreUsedUp() {
+        when(taskOutboxService.claim(2)).thenReturn(Arrays.asList(entry(1, "100", 1), entry(2, "200", 2)));
+        when(queueProducer.placeItemsInQueue(any(), any())).thenReturn(Collections.singletonList(
+            failed(Arrays.asList("100", "200"), new IllegalStateException("message too large"), 0, 1)));
+
+        relay.relay();
+        verify(taskOutboxService, times(1)).retryLater(eq(Collections.singletonList(1L)), any());
+        verify(taskOutboxService, times(1)).park(eq(Collections.singletonList(2L)), startsWith(
+            "java.lang.IllegalStateException: message too large"));
+        verify(taskOutboxService, never()).delete(Collections.singletonList(2L));
+    }
+
+    @Test
+    public void testEntriesWithTheSameMessageIdAreMatchedByPosition() {
+        // the same case queued by two case types, its entries were sent in different batches
+        when(taskOutboxService.claim(2)).thenReturn(Arrays.asList(entry(1, "100"), entry(2, "100")));
+        when(queueProducer.placeItemsInQueue(any(), any())).thenReturn(Arrays.asList(
+            sent(Collections.singletonList("100"), 0),
+            failed(Collections.singletonList("100"), new IllegalStateException("server busy"), 1)));
+
+        relay.relay();
+        verify(taskOutboxService, times(1)).delete(Collections.singletonList(1L));
+        verify(taskOutboxService, times(1)).retryLater(eq(Collections.singletonList(2L)), any());
+    }
+
+    @Test
+    public void testNoTransactionIsOpenWhileTheBatchIsSent() {
+        when(taskOutboxService.claim(2)).thenReturn(Collections.singletonList(entry(1, "100")));
+        when(queueProducer.placeItemsInQueue(any(), any())).thenAnswer(invocation -> {
+            Assert.assertTrue(mockingDetails(transactionManager).getInvocations().isEmpty());
+            return Collections.singletonList(sent(Collections.singletonList("100"), 0));
+        });
+
+        relay.relay();
+        verify(transactionManager, times(1)).getTransaction(any());
+        verify(taskOutboxService, times(1)).delete(Collections.singletonList(1L));
+    }
+
+    private static BatchSendResult sent(List<String> messageIds, Integer... positions) {
+        return BatchSendResult.success(messageIds, Arrays.asList(positions));
+    }
+
+    private static BatchSendResult failed(List<String> messageIds, Throwable error, Integer... positions) {
+        return BatchSendResult.failure(messageIds, Arrays.asList(positions), error);
+    }
+
+    private static OutboxEntry entry(long id, String caseId) {
+        return entry(id, caseId, 0);
+    }
+
+    private static OutboxEntry entry(long id, String caseId, int attempts) {
+        return new OutboxEntry(id, caseId, "{\"id\":\"" + caseId + "\",\"state\":\"Submitted\"}", attempts);
+    }
+
+    private static Task task(String caseId) {
+        return Task.builder().id(caseId).state("Submitted").build();
+    }
+}